@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio;
+
+import edu.umd.cs.findbugs.annotations.CreatesObligation;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.NonWritableChannelException;
+
+/**
+ * A <em>stateless</em> factory for asynchronous byte channels which operate
+ * on a {@linkplain #target() target entry}.
+ * This is the asynchronous counterpart of an {@link InputSocket}:
+ * The I/O operations of the channels complete asynchronously, so they don't
+ * tie up a thread while waiting for I/O.
+ * <p>
+ * Implementations should be immutable.
+ *
+ * @param  <E> the type of the {@linkplain #target() target entry} for I/O
+ *         operations.
+ * @see    AsyncOutputSocket
+ * @see    IoSockets#async(InputSocket, java.util.concurrent.Executor)
+ * @see    IoSockets#async(InputSocket, java.nio.file.Path)
+ * @author Christian Schlichtherle
+ */
+public interface AsyncInputSocket<E extends Entry> extends IoSocket<E> {
+
+    /**
+     * Returns a new asynchronous byte channel for reading bytes.
+     * <p>
+     * Because the intention of this interface is input, the returned channel
+     * may not be able to write data and any attempt to do so should fail with
+     * a {@link NonWritableChannelException}.
+     *
+     * @param  peer the nullable peer socket for copying entry contents.
+     * @return A new asynchronous byte channel for reading bytes.
+     * @throws IOException on any I/O error.
+     */
+    @CreatesObligation
+    AsynchronousByteChannel channel(@Nullable AsyncOutputSocket<? extends Entry> peer)
+    throws IOException;
+}
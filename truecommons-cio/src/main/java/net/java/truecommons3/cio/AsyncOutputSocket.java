@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio;
+
+import edu.umd.cs.findbugs.annotations.CreatesObligation;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.NonReadableChannelException;
+
+/**
+ * A <em>stateless</em> factory for asynchronous byte channels which operate
+ * on a {@linkplain #target() target entry}.
+ * This is the asynchronous counterpart of an {@link OutputSocket}:
+ * The I/O operations of the channels complete asynchronously, so they don't
+ * tie up a thread while waiting for I/O.
+ * <p>
+ * Implementations should be immutable.
+ *
+ * @param  <E> the type of the {@linkplain #target() target entry} for I/O
+ *         operations.
+ * @see    AsyncInputSocket
+ * @see    IoSockets#async(OutputSocket, java.util.concurrent.Executor)
+ * @see    IoSockets#async(OutputSocket, java.nio.file.Path)
+ * @author Christian Schlichtherle
+ */
+public interface AsyncOutputSocket<E extends Entry> extends IoSocket<E> {
+
+    /**
+     * Returns a new asynchronous byte channel for writing bytes.
+     * The entry contents get committed when the channel gets closed.
+     * <p>
+     * Because the intention of this interface is output, the returned channel
+     * may not be able to read data and any attempt to do so should fail with
+     * a {@link NonReadableChannelException}.
+     *
+     * @param  peer the nullable peer socket for copying entry contents.
+     * @return A new asynchronous byte channel for writing bytes.
+     * @throws IOException on any I/O error.
+     */
+    @CreatesObligation
+    AsynchronousByteChannel channel(@Nullable AsyncInputSocket<? extends Entry> peer)
+    throws IOException;
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio;
+
+import net.java.truecommons3.shed.Pool;
+import net.java.truecommons3.shed.UniqueObject;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+
+/**
+ * A pool of byte buffers of a fixed size.
+ * <p>
+ * The byte buffers are direct byte buffers which get taken from slabs.
+ * When a byte buffer gets {@linkplain #release released}, its slab gets
+ * recycled immediately rather than waiting for the garbage collector.
+ * The total capacity of all slabs is limited by the memory budget.
+ * Once the budget is exhausted, heap byte buffers get used instead.
+ * So the memory used by this pool is bounded by the maximum number of byte
+ * buffers which are in use at the same time.
+ *
+ * @see    InputSocketPublisher
+ * @see    OutputSocketSubscriber
+ * @author Christian Schlichtherle
+ */
+@ThreadSafe
+public final class ByteBufferPool
+extends UniqueObject implements Pool<ByteBuffer, RuntimeException> {
+
+    private final int bufferSize;
+    private final SlabAllocator slabs;
+
+    /**
+     * Constructs a new byte buffer pool.
+     *
+     * @param bufferSize the size of the byte buffers.
+     * @param budget the maximum number of bytes of direct memory to allocate.
+     */
+    public ByteBufferPool(final int bufferSize, final long budget) {
+        if (0 >= bufferSize)
+            throw new IllegalArgumentException("Buffer size not positive: " + bufferSize);
+        this.bufferSize = bufferSize;
+        this.slabs = new SlabAllocator(budget);
+    }
+
+    /** Returns the size of the byte buffers. */
+    public int getBufferSize() { return bufferSize; }
+
+    /**
+     * Returns the total capacity of all slabs allocated by this pool, whether
+     * they are in use or free.
+     */
+    public long getReservedMemory() { return slabs.getReserved(); }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return A cleared byte buffer with a position of zero and a limit of
+     *         {@link #getBufferSize()}.
+     */
+    @Override
+    public ByteBuffer allocate() {
+        final ByteBuffer buffer = slabs.allocate(bufferSize);
+        buffer.limit(bufferSize);
+        return buffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The given byte buffer must not get used anymore.
+     */
+    @Override
+    public void release(ByteBuffer buffer) { slabs.recycle(buffer); }
+
+    /**
+     * Returns a string representation of this object for debugging and logging
+     * purposes.
+     */
+    @Override
+    public String toString() {
+        return String.format("%s[bufferSize=%d, budget=%d, reserved=%d]",
+                getClass().getName(), getBufferSize(), slabs.getBudget(),
+                getReservedMemory());
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio;
+
+import edu.umd.cs.findbugs.annotations.DischargesObligation;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import static net.java.truecommons3.cio.Entry.UNKNOWN;
+
+/**
+ * A compact container which stores the properties of its entries in
+ * columns of primitive arrays rather than in an object per entry.
+ * <p>
+ * The entry names get encoded in UTF-8 and stored in a shared byte arena.
+ * The sizes and times get stored in one {@code long[]} column per
+ * {@link Entry.Size} and {@link Entry.Access} type.
+ * The permissions for the {@link Entry.PosixEntity}s get packed into an
+ * {@code int[]} column, using two bits per access type and entity.
+ * An open addressing hash table of {@code int}s maps entry names to their
+ * row, so looking up an entry by its name does not require any
+ * {@link String} objects to be retained.
+ * This way, an entry requires about one hundred bytes plus the length of
+ * its encoded name, which is a small fraction of an object per entry with
+ * maps for its properties.
+ * <p>
+ * The entries returned by this table are flyweight views of a row which get
+ * created on demand.
+ * Changing the properties of a view changes the row, so all views of the
+ * same row are equal.
+ * Permissions can only get set for {@link Entry.PosixEntity}s.
+ *
+ * @author Christian Schlichtherle
+ */
+@NotThreadSafe
+public final class EntryTable implements Container<MutableEntry> {
+
+    private static final Entry.Size[] SIZES = Entry.Size.values();
+    private static final Entry.Access[] ACCESSES = Entry.Access.values();
+    private static final Entry.PosixEntity[] ENTITIES = Entry.PosixEntity.values();
+
+    /** The number of bits per permission. */
+    private static final int PERMISSION_BITS = 2;
+    private static final int PERMISSION_MASK = (1 << PERMISSION_BITS) - 1;
+    private static final int PERMISSION_FALSE = 1, PERMISSION_TRUE = 2;
+
+    static {
+        if (Integer.SIZE < ACCESSES.length * ENTITIES.length * PERMISSION_BITS)
+            throw new AssertionError("The permissions of a row do not fit into an int!");
+    }
+
+    /**
+     * The maximum number of rows.
+     * This keeps the length of the hash table within the limits of an array.
+     */
+    private static final int MAX_ROWS = 1 << 28;
+
+    /** The maximum number of bytes in the arena. */
+    private static final int MAX_ARENA_SIZE = Integer.MAX_VALUE - 8;
+
+    private int size;
+
+    /** The encoded names of all rows. */
+    private byte[] arena;
+
+    /** The number of bytes used in the arena. */
+    private int arenaSize;
+
+    /**
+     * The offsets of the encoded names in the arena.
+     * The name of row {@code i} ends where the name of row {@code i + 1}
+     * starts, so this column has one more element than there are rows.
+     */
+    private int[] offsets;
+
+    /** The hash codes of the encoded names. */
+    private int[] hashes;
+
+    /** The size columns, indexed by the ordinal of the size type. */
+    private final long[][] sizes = new long[SIZES.length][];
+
+    /** The time columns, indexed by the ordinal of the access type. */
+    private final long[][] times = new long[ACCESSES.length][];
+
+    /** The packed POSIX permissions. */
+    private int[] permissions;
+
+    /**
+     * The hash table which maps names to rows.
+     * Each slot holds one plus the row index or zero if the slot is empty.
+     * The length is a power of two.
+     */
+    private int[] slots;
+
+    /** Constructs a new, empty entry table. */
+    public EntryTable() { this(16); }
+
+    /**
+     * Constructs a new, empty entry table.
+     *
+     * @param initialCapacity the initial number of rows to allocate.
+     *        This must not exceed 2<sup>28</sup>.
+     */
+    public EntryTable(final int initialCapacity) {
+        if (0 > initialCapacity)
+            throw new IllegalArgumentException("Negative initial capacity: " + initialCapacity);
+        if (MAX_ROWS < initialCapacity)
+            throw new IllegalArgumentException("Initial capacity too large: " + initialCapacity);
+        final int capacity = Math.max(1, initialCapacity);
+        arena = new byte[(int) Math.min(16L * capacity, MAX_ARENA_SIZE)];
+        offsets = new int[capacity + 1];
+        hashes = new int[capacity];
+        for (int i = sizes.length; 0 <= --i; )
+            sizes[i] = new long[capacity];
+        for (int i = times.length; 0 <= --i; )
+            times[i] = new long[capacity];
+        permissions = new int[capacity];
+        slots = new int[Integer.highestOneBit(capacity) << 2];
+    }
+
+    /**
+     * Returns the entry with the given name, adding a new row with unknown
+     * properties if there is no such entry.
+     *
+     * @param  name the name of the entry.
+     * @return The entry with the given name.
+     */
+    public MutableEntry add(final String name) {
+        final byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(encoded);
+        final int slot = find(encoded, hash);
+        final int row = slots[slot] - 1;
+        return new View(0 <= row ? row : append(slot, encoded, hash));
+    }
+
+    /**
+     * Returns the entry with the name of the given entry after copying all
+     * of its sizes, times and POSIX permissions, adding a new row if there is
+     * no such entry.
+     *
+     * @param  entry the entry to copy.
+     * @return The entry with the name of the given entry.
+     */
+    public MutableEntry add(final Entry entry) {
+        final MutableEntry view = add(entry.getName());
+        for (final Entry.Size type : SIZES)
+            view.setSize(type, entry.getSize(type));
+        for (final Entry.Access type : ACCESSES) {
+            view.setTime(type, entry.getTime(type));
+            for (final Entry.PosixEntity entity : ENTITIES)
+                view.setPermitted(type, entity, entry.isPermitted(type, entity));
+        }
+        return view;
+    }
+
+    /**
+     * Returns the entry in the given row.
+     * The rows are numbered in the order in which the entries have been
+     * added.
+     *
+     * @param  row the index of the row.
+     * @return The entry in the given row.
+     */
+    public MutableEntry get(final int row) {
+        if (0 > row || row >= size)
+            throw new IndexOutOfBoundsException();
+        return new View(row);
+    }
+
+    @Override
+    public int size() { return size; }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The iteration reflects the order in which the entries have been added.
+     */
+    @Override
+    public Iterator<MutableEntry> iterator() {
+        return new Iterator<MutableEntry>() {
+            int row;
+
+            @Override
+            public boolean hasNext() { return row < size; }
+
+            @Override
+            public MutableEntry next() {
+                if (row >= size)
+                    throw new NoSuchElementException();
+                return new View(row++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This method runs in constant time on average.
+     */
+    @Override
+    public @Nullable MutableEntry entry(final String name) {
+        final byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        final int row = slots[find(encoded, hash(encoded))] - 1;
+        return 0 <= row ? new View(row) : null;
+    }
+
+    /** Does nothing. */
+    @Override
+    @DischargesObligation
+    public void close() { }
+
+    /**
+     * Returns the slot for the given encoded name, which either holds its row
+     * or is empty.
+     */
+    private int find(final byte[] encoded, final int hash) {
+        final int[] slots = this.slots;
+        final int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            final int row = slots[slot] - 1;
+            if (0 > row || hashes[row] == hash && equals(row, encoded))
+                return slot;
+        }
+    }
+
+    private boolean equals(final int row, final byte[] encoded) {
+        final int offset = offsets[row];
+        final int length = encoded.length;
+        if (offsets[row + 1] - offset != length)
+            return false;
+        final byte[] arena = this.arena;
+        for (int i = 0; i < length; i++)
+            if (arena[offset + i] != encoded[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Appends a new row with the given encoded name and unknown properties.
+     *
+     * @param  slot the empty slot for the new row.
+     * @return The index of the new row.
+     */
+    private int append(final int slot, final byte[] encoded, final int hash) {
+        final int row = size;
+        if (row == hashes.length)
+            grow();
+        final int length = encoded.length;
+        if (arena.length - arenaSize < length) {
+            if (MAX_ARENA_SIZE - arenaSize < length)
+                throw new IllegalStateException("Too many bytes in the entry names!");
+            arena = Arrays.copyOf(arena, (int) Math.min(
+                    Math.max(arenaSize + length, arena.length * 3L / 2),
+                    MAX_ARENA_SIZE));
+        }
+        System.arraycopy(encoded, 0, arena, arenaSize, length);
+        arenaSize += length;
+        offsets[row + 1] = arenaSize;
+        hashes[row] = hash;
+        for (final long[] column : sizes)
+            column[row] = UNKNOWN;
+        for (final long[] column : times)
+            column[row] = UNKNOWN;
+        permissions[row] = 0;
+        slots[slot] = row + 1;
+        size = row + 1;
+        if (size > slots.length >> 1)
+            rehash();
+        return row;
+    }
+
+    /**
+     * Grows the columns by half of their capacity.
+     *
+     * @throws IllegalStateException if the columns already have the maximum
+     *         number of rows.
+     */
+    private void grow() {
+        if (MAX_ROWS == hashes.length)
+            throw new IllegalStateException("Too many entries!");
+        final int capacity = (int) Math.min(
+                hashes.length + (hashes.length >> 1) + 1L, MAX_ROWS);
+        offsets = Arrays.copyOf(offsets, capacity + 1);
+        hashes = Arrays.copyOf(hashes, capacity);
+        for (int i = sizes.length; 0 <= --i; )
+            sizes[i] = Arrays.copyOf(sizes[i], capacity);
+        for (int i = times.length; 0 <= --i; )
+            times[i] = Arrays.copyOf(times[i], capacity);
+        permissions = Arrays.copyOf(permissions, capacity);
+    }
+
+    /** Doubles the number of slots of the hash table. */
+    private void rehash() {
+        final int[] slots = new int[this.slots.length << 1];
+        final int mask = slots.length - 1;
+        for (int row = 0; row < size; row++) {
+            int slot = hashes[row] & mask;
+            while (0 != slots[slot])
+                slot = (slot + 1) & mask;
+            slots[slot] = row + 1;
+        }
+        this.slots = slots;
+    }
+
+    private static int hash(final byte[] encoded) {
+        int hash = Arrays.hashCode(encoded);
+        // Spread the bits like HashMap does.
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int shift(final Entry.Access type, final Entry.PosixEntity entity) {
+        return (type.ordinal() * ENTITIES.length + entity.ordinal()) * PERMISSION_BITS;
+    }
+
+    /** A flyweight view of a row. */
+    private final class View implements MutableEntry {
+
+        final int row;
+
+        View(final int row) { this.row = row; }
+
+        @Override
+        public String getName() {
+            final int offset = offsets[row];
+            return new String(arena, offset, offsets[row + 1] - offset,
+                    StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public long getSize(Size type) { return sizes[type.ordinal()][row]; }
+
+        @Override
+        public boolean setSize(final Size type, final long value) {
+            if (0 > value && UNKNOWN != value)
+                throw new IllegalArgumentException("Negative size: " + value);
+            sizes[type.ordinal()][row] = value;
+            return true;
+        }
+
+        @Override
+        public long getTime(Access type) { return times[type.ordinal()][row]; }
+
+        @Override
+        public boolean setTime(final Access type, final long value) {
+            if (0 > value && UNKNOWN != value)
+                throw new IllegalArgumentException("Negative time: " + value);
+            times[type.ordinal()][row] = value;
+            return true;
+        }
+
+        @Override
+        public @Nullable Boolean isPermitted(
+                final Access type,
+                final Entity entity) {
+            if (!(entity instanceof PosixEntity))
+                return null;
+            final int shift = shift(type, (PosixEntity) entity);
+            switch ((permissions[row] >>> shift) & PERMISSION_MASK) {
+                case PERMISSION_FALSE:
+                    return false;
+                case PERMISSION_TRUE:
+                    return true;
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public boolean setPermitted(
+                final Access type,
+                final Entity entity,
+                final @Nullable Boolean value) {
+            Objects.requireNonNull(type);
+            if (!(entity instanceof PosixEntity))
+                return false;
+            final int shift = shift(type, (PosixEntity) entity);
+            final int bits = null == value ? 0
+                    : value ? PERMISSION_TRUE : PERMISSION_FALSE;
+            permissions[row] = permissions[row]
+                    & ~(PERMISSION_MASK << shift)
+                    | bits << shift;
+            return true;
+        }
+
+        EntryTable table() { return EntryTable.this; }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof View))
+                return false;
+            final View that = (View) obj;
+            return this.row == that.row && this.table() == that.table();
+        }
+
+        @Override
+        public int hashCode() { return hashes[row]; }
+
+        /**
+         * Returns a string representation of this object for debugging and
+         * logging purposes.
+         */
+        @Override
+        public String toString() {
+            return String.format("%s[name=%s]",
+                    getClass().getName(), getName());
+        }
+    } // View
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio;
+
+/**
+ * Provides the interfaces for back-pressured reactive streams.
+ * <p>
+ * These interfaces mirror the interfaces of the same name in the class
+ * {@code java.util.concurrent.Flow}, which is only available since JSE 9.
+ * The methods have the same signatures and contracts, so adapting them to
+ * each other is a matter of delegating each method call.
+ *
+ * @see    InputSocketPublisher
+ * @see    OutputSocketSubscriber
+ * @author Christian Schlichtherle
+ */
+public final class Flow {
+
+    private Flow() { }
+
+    /**
+     * A producer of items which get received by subscribers.
+     *
+     * @param <T> the type of the published items.
+     */
+    public interface Publisher<T> {
+
+        /**
+         * Adds the given subscriber.
+         * The publisher calls {@link Subscriber#onSubscribe} with a new
+         * subscription and then sends items to the subscriber on its
+         * request.
+         *
+         * @param subscriber the subscriber to add.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items.
+     * The methods get called in strict sequential order for each
+     * subscription.
+     *
+     * @param <T> the type of the received items.
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Gets called before any other method for the given subscription.
+         *
+         * @param subscription the new subscription.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Gets called with the next item of the subscription.
+         *
+         * @param item the next item.
+         */
+        void onNext(T item);
+
+        /**
+         * Gets called when the subscription fails with an unrecoverable
+         * error.
+         * No other methods get called after this method.
+         *
+         * @param throwable the error.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Gets called when the subscription is complete.
+         * No other methods get called after this method.
+         */
+        void onComplete();
+    }
+
+    /** Links a publisher to a subscriber. */
+    public interface Subscription {
+
+        /**
+         * Adds the given number of items to the unfulfilled demand of this
+         * subscription.
+         *
+         * @param n the number of items to add.
+         *        If this is not positive, then the subscriber gets called
+         *        with an {@link IllegalArgumentException}.
+         */
+        void request(long n);
+
+        /**
+         * Causes the subscriber to (eventually) stop receiving items.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio;
+
+import net.java.truecommons3.io.AbstractSeekableChannel;
+import net.java.truecommons3.io.ByteBufferChannel;
+import net.java.truecommons3.io.DisconnectingSeekableChannel;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.java.truecommons3.cio.Entry.Access.READ;
+import static net.java.truecommons3.cio.Entry.Access.WRITE;
+
+/**
+ * A pool of I/O buffers which start to buffer their contents in memory and
+ * spill them to a temporary file once it gets too large.
+ * The contents of an I/O buffer spill to a temporary file when they exceed
+ * a threshold or if the memory budget shared by all I/O buffers of this pool
+ * is exhausted.
+ * Otherwise, the contents stay in a heap byte buffer.
+ * The memory budget accounts for the capacity of the heap byte buffers
+ * rather than the size of their contents.
+ * <p>
+ * Like with a {@link MemoryBufferPool}, the contents of an I/O buffer get
+ * replaced when an output channel or stream gets closed.
+ * When an I/O buffer gets {@linkplain IoBuffer#release() released}, its
+ * temporary file gets deleted.
+ * If any input channels or streams are still open, then the temporary file
+ * gets deleted when the last of them gets closed.
+ * Any output channels or streams which are still open get discarded, so
+ * their memory gets returned to the budget even if they never get closed.
+ *
+ * @author Christian Schlichtherle
+ */
+@ThreadSafe
+public final class HybridBufferPool extends IoBufferPool {
+
+    private static final String BUFFER_NAME = "buffer-";
+    private static final String TEMP_FILE_PREFIX = "tcio";
+
+    private final int initialCapacity;
+    private final long threshold;
+    private final long budget;
+    private final @Nullable Path directory;
+    private final AtomicLong memory = new AtomicLong();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Constructs a new hybrid buffer pool which creates its temporary files
+     * in the default temporary file directory.
+     *
+     * @param initialCapacity the initial capacity of the byte buffer to use
+     *        for writing to an allocated I/O buffer.
+     * @param threshold the maximum number of bytes to buffer in memory per
+     *        I/O buffer.
+     * @param budget the maximum number of bytes to buffer in memory for all
+     *        I/O buffers of this pool.
+     */
+    public HybridBufferPool(int initialCapacity, long threshold, long budget) {
+        this(initialCapacity, threshold, budget, null);
+    }
+
+    /**
+     * Constructs a new hybrid buffer pool.
+     *
+     * @param initialCapacity the initial capacity of the byte buffer to use
+     *        for writing to an allocated I/O buffer.
+     * @param threshold the maximum number of bytes to buffer in memory per
+     *        I/O buffer.
+     * @param budget the maximum number of bytes to buffer in memory for all
+     *        I/O buffers of this pool.
+     * @param directory the nullable directory for the temporary files.
+     *        If this is {@code null}, then the default temporary file
+     *        directory gets used.
+     */
+    public HybridBufferPool(
+            final int initialCapacity,
+            final long threshold,
+            final long budget,
+            final @Nullable Path directory) {
+        if (0 > initialCapacity)
+            throw new IllegalArgumentException("Negative initial capacity: " + initialCapacity);
+        if (0 > threshold)
+            throw new IllegalArgumentException("Negative threshold: " + threshold);
+        if (0 > budget)
+            throw new IllegalArgumentException("Negative budget: " + budget);
+        this.initialCapacity = initialCapacity;
+        this.threshold = threshold;
+        this.budget = budget;
+        this.directory = directory;
+    }
+
+    @Override
+    public IoBuffer allocate() {
+        final Buffer buffer = new Buffer(total.getAndIncrement());
+        active.getAndIncrement();
+        return buffer;
+    }
+
+    /**
+     * Returns the number of I/O buffers allocated but not yet released from
+     * this pool.
+     *
+     * @return The number of I/O buffers allocated but not yet released from
+     *         this pool.
+     */
+    public int size() { return active.get(); }
+
+    /**
+     * Returns the total capacity of the heap byte buffers of the I/O buffers
+     * of this pool, including any open output channels.
+     *
+     * @return The number of bytes of the memory budget currently in use.
+     */
+    public long getMemory() { return memory.get(); }
+
+    private boolean reserve(final long size) {
+        while (true) {
+            final long memory = this.memory.get();
+            if (budget - size < memory)
+                return false;
+            if (this.memory.compareAndSet(memory, memory + size))
+                return true;
+        }
+    }
+
+    private void free(long size) { memory.getAndAdd(-size); }
+
+    private Path createTempFile() throws IOException {
+        return null != directory
+                ? Files.createTempFile(directory, TEMP_FILE_PREFIX, null)
+                : Files.createTempFile(TEMP_FILE_PREFIX, null);
+    }
+
+    @NotThreadSafe
+    private final class Buffer implements IoBuffer {
+
+        final String name;
+
+        /** The contents if they are buffered in memory. */
+        @Nullable ByteBuffer data;
+
+        /** The temporary file with the contents if they have spilled. */
+        @Nullable Path file;
+
+        /** The number of bytes of the memory budget reserved for the data. */
+        long reserved;
+
+        /** Temporary files which are waiting for all readers to close. */
+        final List<Path> retired = new ArrayList<>();
+
+        /** The open output channels. */
+        final List<OutputChannel> writers = new ArrayList<>();
+
+        /** The number of open input channels. */
+        int readers;
+
+        long size = UNKNOWN;
+        final EnumMap<Access, Long> times = new EnumMap<>(Access.class);
+        boolean released;
+
+        Buffer(int i) { this.name = BUFFER_NAME + i; }
+
+        @Override
+        public String getName() { return name; }
+
+        @Override
+        public long getSize(Size type) { return size; }
+
+        @Override
+        public long getTime(Access type) {
+            final Long time = times.get(type);
+            return null != time ? time : UNKNOWN;
+        }
+
+        @Override
+        public Boolean isPermitted(Access type, Entity entity) { return true; }
+
+        @Override
+        public InputSocket<Buffer> input() {
+            return new AbstractInputSocket<Buffer>() {
+                @Override
+                public Buffer target() { return Buffer.this; }
+
+                @Override
+                public SeekableByteChannel channel(
+                        OutputSocket<? extends Entry> peer)
+                throws IOException {
+                    return new InputChannel();
+                }
+            };
+        }
+
+        @Override
+        public OutputSocket<Buffer> output() {
+            return new AbstractOutputSocket<Buffer>() {
+                @Override
+                public Buffer target() { return Buffer.this; }
+
+                @Override
+                public SeekableByteChannel channel(
+                        InputSocket<? extends Entry> peer) {
+                    return new OutputChannel();
+                }
+            };
+        }
+
+        SeekableByteChannel dataInputChannel() throws IOException {
+            if (null != file)
+                return FileChannel.open(file, StandardOpenOption.READ);
+            if (null != data)
+                return new ByteBufferChannel(data.asReadOnlyBuffer());
+            throw new FileNotFoundException();
+        }
+
+        /** Replaces the contents of this buffer. */
+        void replace(
+                final @Nullable ByteBuffer data,
+                final @Nullable Path file,
+                final long reserved,
+                final long size)
+        throws IOException {
+            final Path oldFile = this.file;
+            free(this.reserved);
+            this.data = data;
+            this.file = file;
+            this.reserved = reserved;
+            this.size = size;
+            if (null != oldFile) {
+                if (0 == readers)
+                    Files.deleteIfExists(oldFile);
+                else
+                    retired.add(oldFile);
+            }
+        }
+
+        @Override
+        public void release() throws IOException {
+            if (released) return;
+            active.getAndDecrement();
+            released = true;
+            try {
+                for (final OutputChannel writer
+                        : writers.toArray(new OutputChannel[writers.size()]))
+                    writer.discard();
+            } finally {
+                replace(null, null, 0, UNKNOWN);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[name=%s, file=%s]",
+                    getClass().getName(), name, file);
+        }
+
+        private final class InputChannel extends DisconnectingSeekableChannel {
+
+            boolean closed;
+
+            InputChannel() throws IOException {
+                super(dataInputChannel());
+                readers++;
+            }
+
+            @Override
+            public boolean isOpen() { return !closed; }
+
+            @Override
+            protected boolean isTransparent() { return true; }
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    channel.close();
+                    times.put(READ, System.currentTimeMillis());
+                    closed = true;
+                    if (0 == --readers) {
+                        final Path[] files = retired.toArray(new Path[retired.size()]);
+                        retired.clear();
+                        for (final Path file : files)
+                            Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } // InputChannel
+
+        /**
+         * Buffers the contents in memory until they exceed the threshold or
+         * the memory budget is exhausted and then spills them to a temporary
+         * file.
+         * The capacity of the buffer gets reserved from the memory budget
+         * before allocating it.
+         */
+        private final class OutputChannel extends AbstractSeekableChannel {
+
+            SeekableByteChannel channel;
+
+            @Nullable Path file;
+
+            /**
+             * The number of bytes of the memory budget reserved for the
+             * capacity of the buffer.
+             */
+            int reserved;
+
+            boolean closed;
+
+            OutputChannel() {
+                int capacity = (int) Math.min(initialCapacity, threshold);
+                if (!reserve(capacity))
+                    capacity = 0;
+                channel = new ByteBufferChannel(
+                        (ByteBuffer) ByteBuffer.allocate(capacity).limit(0));
+                reserved = capacity;
+                writers.add(this);
+            }
+
+            @Override
+            public boolean isOpen() { return !closed; }
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                checkOpen();
+                return channel.read(dst);
+            }
+
+            @Override
+            public int write(final ByteBuffer src) throws IOException {
+                checkOpen();
+                if (null == file) {
+                    final long size = Math.max(channel.size(),
+                            channel.position() + src.remaining());
+                    if (reserved < size) {
+                        final int capacity = (int) Math.min(
+                                Math.max(2L * reserved, size),
+                                Math.min(threshold, Integer.MAX_VALUE));
+                        if (size <= capacity && reserve(capacity - reserved))
+                            grow(capacity);
+                        else
+                            spill();
+                    }
+                }
+                return channel.write(src);
+            }
+
+            /**
+             * Moves the contents to a new buffer with the given capacity,
+             * which has been reserved already.
+             */
+            void grow(final int capacity) throws IOException {
+                final ByteBuffer contents = (ByteBuffer) ((ByteBufferChannel) channel)
+                        .getBuffer()
+                        .rewind();
+                final ByteBuffer buffer = (ByteBuffer) ByteBuffer
+                        .allocate(capacity)
+                        .put(contents)
+                        .flip();
+                final long position = channel.position();
+                channel = new ByteBufferChannel(buffer).position(position);
+                reserved = capacity;
+            }
+
+            /** Moves the contents from memory to a new temporary file. */
+            void spill() throws IOException {
+                final Path file = createTempFile();
+                final ByteBuffer contents = (ByteBuffer) ((ByteBufferChannel) channel)
+                        .getBuffer()
+                        .rewind();
+                final FileChannel fc;
+                try {
+                    fc = FileChannel.open(file,
+                            StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    try {
+                        while (contents.hasRemaining())
+                            fc.write(contents);
+                        fc.position(channel.position());
+                    } catch (final Throwable ex) {
+                        fc.close();
+                        throw ex;
+                    }
+                } catch (final Throwable ex) {
+                    Files.deleteIfExists(file);
+                    throw ex;
+                }
+                this.file = file;
+                channel = fc;
+                free(reserved);
+                reserved = 0;
+            }
+
+            @Override
+            public long position() throws IOException {
+                checkOpen();
+                return channel.position();
+            }
+
+            @Override
+            public SeekableByteChannel position(long newPosition)
+            throws IOException {
+                checkOpen();
+                channel.position(newPosition);
+                return this;
+            }
+
+            @Override
+            public long size() throws IOException {
+                checkOpen();
+                return channel.size();
+            }
+
+            @Override
+            public SeekableByteChannel truncate(long size) throws IOException {
+                checkOpen();
+                channel.truncate(size);
+                return this;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) return;
+                final long size;
+                try {
+                    size = channel.size();
+                    channel.close();
+                } catch (final Throwable ex) {
+                    try {
+                        discard();
+                    } catch (final Throwable ex2) {
+                        ex.addSuppressed(ex2);
+                    }
+                    throw ex;
+                }
+                closed = true;
+                writers.remove(this);
+                times.put(WRITE, System.currentTimeMillis());
+                replace(null == file
+                            ? (ByteBuffer) ((ByteBufferChannel) channel)
+                                .getBuffer()
+                                .rewind()
+                            : null,
+                        file, reserved, size);
+            }
+
+            /**
+             * Closes this channel without replacing the contents of the I/O
+             * buffer, frees its reserved memory and deletes its temporary
+             * file, if any.
+             */
+            void discard() throws IOException {
+                if (closed) return;
+                closed = true;
+                writers.remove(this);
+                free(reserved);
+                reserved = 0;
+                try {
+                    channel.close();
+                } finally {
+                    if (null != file)
+                        Files.deleteIfExists(file);
+                }
+            }
+        } // OutputChannel
+    } // Buffer
+}
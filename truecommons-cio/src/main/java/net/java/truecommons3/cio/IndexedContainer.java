@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio;
+
+import edu.umd.cs.findbugs.annotations.DischargesObligation;
+import net.java.truecommons3.shed.UniqueObject;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A container which indexes its entries by name.
+ * <p>
+ * A hash index provides lookups of entries by their name in constant time
+ * and preserves the order in which the entries have been added for
+ * {@linkplain #iterator() iteration}.
+ * A sorted index provides queries for entries with a common name prefix or
+ * within a range of names, and listings of the members of a directory.
+ * The sorted index gets built on the first query only, so containers which
+ * are only used for lookups do not pay for it.
+ * Both indexes get updated incrementally when adding or removing entries,
+ * e.g. while reading the central directory of an archive file.
+ * <p>
+ * Entry names use {@code '/'} as their separator and the names of directory
+ * entries end with a separator, as usual for archive files.
+ * <p>
+ * Subclasses may override {@link #close()} in order to release any
+ * resources associated with the entries.
+ *
+ * @param  <E> the type of the entries in this container.
+ * @author Christian Schlichtherle
+ */
+@NotThreadSafe
+public class IndexedContainer<E extends Entry>
+extends UniqueObject implements Container<E> {
+
+    /** The separator of the segments of entry names. */
+    public static final char SEPARATOR = '/';
+
+    /** The hash index, which maps entry names to entries in added order. */
+    private final Map<String, E> entries = new LinkedHashMap<>();
+
+    /** The nullable sorted index, which gets built on demand. */
+    private @Nullable NavigableMap<String, E> sorted;
+
+    /** Constructs a new, empty indexed container. */
+    public IndexedContainer() { }
+
+    /**
+     * Constructs a new indexed container with the given entries.
+     *
+     * @param entries the entries to add.
+     */
+    public IndexedContainer(final Iterable<? extends E> entries) {
+        for (final E entry : entries)
+            add(entry);
+    }
+
+    /**
+     * Adds the given entry to this container.
+     * If this container already has an entry with the same name, then it
+     * gets replaced, but its position in the iteration order is retained.
+     *
+     * @param  entry the entry to add.
+     * @return The replaced entry or {@code null} if no entry with the same
+     *         name existed in this container.
+     */
+    public @Nullable E add(final E entry) {
+        final String name = entry.getName();
+        final NavigableMap<String, E> sorted = this.sorted;
+        if (null != sorted)
+            sorted.put(name, entry);
+        return entries.put(name, entry);
+    }
+
+    /**
+     * Removes the entry with the given name from this container.
+     *
+     * @param  name the name of the entry.
+     * @return The removed entry or {@code null} if no entry with this name
+     *         existed in this container.
+     */
+    public @Nullable E remove(final String name) {
+        final NavigableMap<String, E> sorted = this.sorted;
+        if (null != sorted)
+            sorted.remove(name);
+        return entries.remove(name);
+    }
+
+    @Override
+    public int size() { return entries.size(); }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The iteration reflects the order in which the entries have been added.
+     * The returned iterator does not support removal.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return Collections.unmodifiableCollection(entries.values()).iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This method runs in constant time.
+     */
+    @Override
+    public @Nullable E entry(String name) { return entries.get(name); }
+
+    /**
+     * Returns a view of the entries with names in the given range, sorted by
+     * their name.
+     *
+     * @param  fromName the lowest name, inclusive.
+     * @param  toName the highest name, exclusive.
+     * @return An unmodifiable view of the entries with names in the given
+     *         range, sorted by their name.
+     */
+    public Collection<E> range(String fromName, String toName) {
+        return Collections.unmodifiableCollection(
+                sorted().subMap(fromName, true, toName, false).values());
+    }
+
+    /**
+     * Returns a view of the entries with names which start with the given
+     * prefix, sorted by their name.
+     * For example, {@code prefixed("a/")} returns the directory entry
+     * {@code "a/"}, if any, and all entries in this directory and its
+     * subdirectories.
+     *
+     * @param  prefix the common prefix of the entry names.
+     * @return An unmodifiable view of the entries with names which start with
+     *         the given prefix, sorted by their name.
+     */
+    public Collection<E> prefixed(final String prefix) {
+        final String successor = successor(prefix);
+        final NavigableMap<String, E> sorted = sorted();
+        return Collections.unmodifiableCollection((null == successor
+                ? sorted.tailMap(prefix, true)
+                : sorted.subMap(prefix, true, successor, false)).values());
+    }
+
+    /**
+     * Returns the sorted list of the names of the members of the given
+     * directory.
+     * The members are the entries in this directory and the subdirectories
+     * with entries in them.
+     * The names of subdirectories end with a {@link #SEPARATOR}, even if
+     * there is no entry for the subdirectory itself.
+     * So when looking up a member, {@link #entry(String)} may return
+     * {@code null}.
+     * <p>
+     * This method skips over the contents of subdirectories, so it runs in
+     * time proportional to the number of members rather than the number of
+     * entries in the directory tree.
+     *
+     * @param  directory the name of the directory.
+     *         The empty string is the root directory.
+     *         A trailing separator is optional.
+     * @return The sorted list of the names of the members of the given
+     *         directory.
+     */
+    public List<String> members(String directory) {
+        if (!directory.isEmpty()
+                && SEPARATOR != directory.charAt(directory.length() - 1))
+            directory += SEPARATOR;
+        final int length = directory.length();
+        final NavigableMap<String, E> sorted = sorted();
+        final List<String> members = new ArrayList<>();
+        for (   String name = sorted.higherKey(directory);
+                null != name && name.startsWith(directory); ) {
+            final int i = name.indexOf(SEPARATOR, length);
+            if (0 > i || name.length() - 1 == i) {
+                members.add(name);
+                name = sorted.higherKey(name);
+            } else {
+                // Skip the contents of the subdirectory.
+                final String subdirectory = name.substring(0, i + 1);
+                final int last = members.size() - 1;
+                if (0 > last || !members.get(last).equals(subdirectory))
+                    members.add(subdirectory);
+                final String successor = successor(subdirectory);
+                name = null == successor ? null : sorted.ceilingKey(successor);
+            }
+        }
+        return members;
+    }
+
+    /** Returns the sorted index, building it if required. */
+    private NavigableMap<String, E> sorted() {
+        NavigableMap<String, E> sorted = this.sorted;
+        if (null == sorted)
+            this.sorted = sorted = new TreeMap<>(entries);
+        return sorted;
+    }
+
+    /**
+     * Returns the lowest string which is greater than all strings with the
+     * given prefix or {@code null} if there is no such string.
+     */
+    private static @Nullable String successor(final String prefix) {
+        for (int i = prefix.length(); 0 <= --i; ) {
+            final char c = prefix.charAt(i);
+            if (Character.MAX_VALUE != c)
+                return prefix.substring(0, i) + (char) (c + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Closes this container.
+     * The implementation in the class {@link IndexedContainer} does nothing.
+     */
+    @Override
+    @DischargesObligation
+    public void close() throws Exception { }
+
+    /**
+     * Returns a string representation of this object for debugging and logging
+     * purposes.
+     */
+    @Override
+    public String toString() {
+        return String.format("%s@%x[size=%d]",
+                getClass().getName(),
+                hashCode(),
+                size());
+    }
+}
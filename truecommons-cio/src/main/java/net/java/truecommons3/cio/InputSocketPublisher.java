@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio;
+
+import net.java.truecommons3.shed.Pool;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the contents of the target of an input socket as a back-pressured
+ * stream of byte buffers.
+ * <p>
+ * Each subscription reads a channel {@link InputSocket#channel created} by the
+ * input socket or, if this is not supported, an input stream
+ * {@link InputSocket#stream created} by the input socket.
+ * A byte buffer gets only allocated from the pool and filled with data when
+ * the subscriber has requested it, so the memory used for streaming is
+ * bounded by the demand of the subscriber rather than the size of the entry.
+ * The subscriber should {@linkplain Pool#release release} each received byte
+ * buffer to the pool when done with it, e.g. like an
+ * {@link OutputSocketSubscriber} does.
+ * <p>
+ * The data gets read by tasks which get run by the given executor.
+ * If the executor rejects a task, then it gets run by the current thread.
+ *
+ * @see    OutputSocketSubscriber
+ * @author Christian Schlichtherle
+ */
+@ThreadSafe
+public final class InputSocketPublisher implements Flow.Publisher<ByteBuffer> {
+
+    private final InputSocket<?> socket;
+    private final Pool<ByteBuffer, ? extends RuntimeException> pool;
+    private final Executor executor;
+
+    /**
+     * Constructs a new input socket publisher.
+     *
+     * @param socket the input socket for the entry to publish.
+     * @param pool the pool for allocating the byte buffers.
+     * @param executor the executor for reading the data.
+     */
+    public InputSocketPublisher(
+            final InputSocket<?> socket,
+            final Pool<ByteBuffer, ? extends RuntimeException> pool,
+            final Executor executor) {
+        this.socket = Objects.requireNonNull(socket);
+        this.pool = Objects.requireNonNull(pool);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+        final Subscription subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.resume();
+    }
+
+    /**
+     * Emits the data to a subscriber.
+     * All signals to the subscriber get sent by the {@link #run} method.
+     * A work-in-progress counter makes sure that at most one task is running
+     * this method at any time.
+     * The counter starts at one so that no task gets started before
+     * {@link Flow.Subscriber#onSubscribe} has returned.
+     */
+    private final class Subscription implements Flow.Subscription, Runnable {
+
+        final Flow.Subscriber<? super ByteBuffer> subscriber;
+        final AtomicLong demand = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger(1);
+        volatile boolean cancelled;
+        volatile @Nullable IllegalArgumentException invalid;
+
+        // Only accessed by the running task.
+        @Nullable ReadableByteChannel channel;
+        boolean done;
+
+        Subscription(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = Objects.requireNonNull(subscriber);
+        }
+
+        @Override
+        public void request(final long n) {
+            if (0 >= n) {
+                invalid = new IllegalArgumentException("Demand not positive: " + n);
+            } else {
+                long d;
+                do {
+                    d = demand.get();
+                    if (Long.MAX_VALUE == d)
+                        break;
+                } while (!demand.compareAndSet(d, Long.MAX_VALUE - d > n
+                        ? d + n
+                        : Long.MAX_VALUE));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        void schedule() {
+            if (0 == wip.getAndIncrement())
+                execute();
+        }
+
+        /** Releases the initial count of the work-in-progress counter. */
+        void resume() {
+            if (0 != wip.decrementAndGet())
+                execute();
+        }
+
+        private void execute() {
+            try {
+                executor.execute(this);
+            } catch (final RejectedExecutionException ex) {
+                run();
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (!done)
+                    drain();
+            } while (0 != (missed = wip.addAndGet(-missed)));
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    if (cancelled) {
+                        close();
+                        return;
+                    }
+                    final IllegalArgumentException invalid = this.invalid;
+                    if (null != invalid) {
+                        close();
+                        subscriber.onError(invalid);
+                        return;
+                    }
+                    if (0 == demand.get())
+                        return;
+                    final ByteBuffer buffer = pool.allocate();
+                    final boolean eof;
+                    try {
+                        eof = fill(buffer);
+                    } catch (final IOException | RuntimeException ex) {
+                        pool.release(buffer);
+                        throw ex;
+                    }
+                    buffer.flip();
+                    if (buffer.hasRemaining()) {
+                        demand.decrementAndGet();
+                        subscriber.onNext(buffer);
+                    } else {
+                        pool.release(buffer);
+                    }
+                    if (eof) {
+                        close();
+                        subscriber.onComplete();
+                        return;
+                    }
+                }
+            } catch (final IOException | RuntimeException ex) {
+                try {
+                    close();
+                } catch (final IOException ex2) {
+                    ex.addSuppressed(ex2);
+                }
+                subscriber.onError(ex);
+            }
+        }
+
+        /**
+         * Fills the given buffer with data.
+         *
+         * @return Whether the end of the data has been reached.
+         */
+        private boolean fill(final ByteBuffer buffer) throws IOException {
+            ReadableByteChannel channel = this.channel;
+            if (null == channel)
+                this.channel = channel = open();
+            while (buffer.hasRemaining())
+                if (0 > channel.read(buffer))
+                    return true;
+            return false;
+        }
+
+        private ReadableByteChannel open() throws IOException {
+            try {
+                return socket.channel(null);
+            } catch (final UnsupportedOperationException ex) {
+                return Channels.newChannel(socket.stream(null));
+            }
+        }
+
+        /** Closes the channel, if any, and terminates this subscription. */
+        private void close() throws IOException {
+            done = true;
+            final ReadableByteChannel channel = this.channel;
+            if (null != channel) {
+                this.channel = null;
+                channel.close();
+            }
+        }
+    } // Subscription
+}
@@ -4,15 +4,44 @@
  */
 package net.java.truecommons3.cio;
 
+import net.java.truecommons3.io.AsyncChannels;
+import net.java.truecommons3.io.CompletionFuture;
+import net.java.truecommons3.io.CopyOptions;
 import net.java.truecommons3.io.Sink;
 import net.java.truecommons3.io.Source;
 import net.java.truecommons3.io.Streams;
+import net.java.truecommons3.shed.ExceptionBuilder;
+import net.java.truecommons3.shed.SuppressedExceptionBuilder;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channel;
+import java.nio.channels.Channels;
+import java.nio.channels.CompletionHandler;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static net.java.truecommons3.cio.Entry.Size.DATA;
 
 /**
  * Provides utility methods for {@link IoSocket}s.
@@ -26,25 +55,610 @@ public final class IoSockets {
     private IoSockets() { }
 
     /**
-     * Copies an input stream {@link InputSocket#stream created}
-     * by the given {@code input} socket to an output stream
-     * {@link OutputSocket#stream created} by the given {@code output}
+     * Copies a seekable byte channel {@link InputSocket#channel created}
+     * by the given {@code input} socket to a seekable byte channel
+     * {@link OutputSocket#channel created} by the given {@code output}
      * socket.
+     * If any of these operations is not supported, then an input stream
+     * {@link InputSocket#stream created} by the given {@code input} socket or
+     * an output stream {@link OutputSocket#stream created} by the given
+     * {@code output} socket is used instead.
      * <p>
-     * This is a high performance implementation which uses a pooled daemon
-     * thread to fill a FIFO of pooled buffers which is concurrently flushed by
-     * the current thread.
+     * This is a high performance implementation which uses
+     * {@link Streams#transfer(Source, Sink)}:
+     * If any of the channels is backed by a file, then the operating system
+     * copies the data.
+     * Otherwise, if the input target is small or backed by memory, then the
+     * current thread copies the data alone.
+     * Otherwise, a pooled daemon thread is used to fill a FIFO of pooled
+     * buffers which is concurrently flushed by the current thread.
      *
      * @param input an input socket for the input target.
      * @param output an output socket for the output target.
      */
     public static void copy(InputSocket<?> input, OutputSocket<?> output)
     throws IOException {
-        Streams.copy(   new InputAdapter(input, output),
-                        new OutputAdapter(output, input));
+        final InputAdapter source = new InputAdapter(input, output);
+        Streams.transfer(source,
+                         new OutputAdapter(output, input),
+                         CopyOptions.DEFAULT,
+                         source);
+    }
+
+    /**
+     * Copies all given pairs of input and output sockets using the given
+     * executor with the given maximum number of concurrent copies.
+     * Equivalent to
+     * {@link #copyAll(Iterable, Executor, int, ExceptionBuilder) copyAll(copies, executor, parallelism, new SuppressedExceptionBuilder<IOException>())}.
+     *
+     * @param  copies the pairs of input and output sockets to copy.
+     * @param  executor the executor for running the copies.
+     * @param  parallelism the maximum number of concurrent copies.
+     * @return The number of successful copies.
+     * @throws IOException if any copy fails.
+     */
+    public static int copyAll(
+            Iterable<? extends Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>>> copies,
+            Executor executor,
+            int parallelism)
+    throws IOException {
+        return copyAll(copies, executor, parallelism,
+                new SuppressedExceptionBuilder<IOException>());
+    }
+
+    /**
+     * Copies all given pairs of input and output sockets using the given
+     * executor with the given maximum number of concurrent copies.
+     * The copies get run in no particular order.
+     * Use {@link #copyAllOrdered} if some outputs must get written one after
+     * another, e.g. the entries of an archive file.
+     * <p>
+     * Each copy gets run by {@link #copy(InputSocket, OutputSocket)}.
+     * If a copy fails with an {@link IOException}, then the remaining copies
+     * proceed and the exception gets added to the given exception builder by
+     * calling {@link ExceptionBuilder#warn(Throwable) warn} in the current
+     * thread.
+     * If this call throws an exception, then no more copies get started and
+     * this method waits until all running copies have completed before
+     * rethrowing the exception.
+     * When all copies have completed,
+     * {@link ExceptionBuilder#check() check} gets called.
+     * <p>
+     * If the executor rejects a copy task, then the current thread runs the
+     * copies instead.
+     *
+     * @param  <X> the type of the exception to throw.
+     * @param  copies the pairs of input and output sockets to copy.
+     * @param  executor the executor for running the copies.
+     * @param  parallelism the maximum number of concurrent copies.
+     * @param  builder the exception builder for the {@link IOException}s of
+     *         the failed copies.
+     * @return The number of successful copies.
+     * @throws X as determined by the exception builder.
+     */
+    public static <X extends Exception> int copyAll(
+            final Iterable<? extends Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>>> copies,
+            final Executor executor,
+            final int parallelism,
+            final ExceptionBuilder<? super IOException, X> builder)
+    throws X {
+        return new Batch(new Singletons(copies.iterator()))
+                .run(executor, parallelism, builder);
+    }
+
+    /**
+     * Copies all given sequences of pairs of input and output sockets using
+     * the given executor with the given maximum number of concurrent copies.
+     * Equivalent to
+     * {@link #copyAllOrdered(Iterable, Executor, int, ExceptionBuilder) copyAllOrdered(sequences, executor, parallelism, new SuppressedExceptionBuilder<IOException>())}.
+     *
+     * @param  sequences the sequences of pairs of input and output sockets to
+     *         copy.
+     * @param  executor the executor for running the copies.
+     * @param  parallelism the maximum number of concurrent copies.
+     * @return The number of successful copies.
+     * @throws IOException if any copy fails.
+     */
+    public static int copyAllOrdered(
+            Iterable<? extends Iterable<? extends Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>>>> sequences,
+            Executor executor,
+            int parallelism)
+    throws IOException {
+        return copyAllOrdered(sequences, executor, parallelism,
+                new SuppressedExceptionBuilder<IOException>());
+    }
+
+    /**
+     * Copies all given sequences of pairs of input and output sockets using
+     * the given executor with the given maximum number of concurrent copies.
+     * The copies in each sequence get run one after another in the order of
+     * the sequence, while different sequences get copied concurrently.
+     * For example, when repacking several archive files, there should be one
+     * sequence per output archive file because its entries must get written
+     * sequentially.
+     * <p>
+     * This method works like {@link #copyAll(Iterable, Executor, int, ExceptionBuilder)}
+     * except that if a copy fails, then the remaining copies in the same
+     * sequence get skipped.
+     *
+     * @param  <X> the type of the exception to throw.
+     * @param  sequences the sequences of pairs of input and output sockets to
+     *         copy.
+     * @param  executor the executor for running the copies.
+     * @param  parallelism the maximum number of concurrent copies.
+     * @param  builder the exception builder for the {@link IOException}s of
+     *         the failed copies.
+     * @return The number of successful copies.
+     * @throws X as determined by the exception builder.
+     */
+    public static <X extends Exception> int copyAllOrdered(
+            final Iterable<? extends Iterable<? extends Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>>>> sequences,
+            final Executor executor,
+            final int parallelism,
+            final ExceptionBuilder<? super IOException, X> builder)
+    throws X {
+        return new Batch(sequences.iterator())
+                .run(executor, parallelism, builder);
+    }
+
+    /** Adapts an iterator of copies to an iterator of singleton sequences. */
+    private static final class Singletons
+    implements Iterator<Iterable<? extends Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>>>> {
+
+        final Iterator<? extends Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>>> copies;
+
+        Singletons(final Iterator<? extends Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>>> copies) {
+            this.copies = copies;
+        }
+
+        @Override
+        public boolean hasNext() { return copies.hasNext(); }
+
+        @Override
+        public Iterable<? extends Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>>> next() {
+            return Collections.singleton(copies.next());
+        }
+
+        @Override
+        public void remove() { throw new UnsupportedOperationException(); }
+    } // Singletons
+
+    /**
+     * Runs a batch of copy sequences.
+     * The workers take the sequences from a shared iterator and post their
+     * exceptions to a queue which gets drained by the current thread, so the
+     * exception builder never gets called concurrently.
+     */
+    @ThreadSafe
+    private static final class Batch {
+
+        /** The event which signals that a worker has completed. */
+        static final Object DONE = new Object();
+
+        final Iterator<? extends Iterable<? extends Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>>>> sequences;
+        final BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        final AtomicInteger copied = new AtomicInteger();
+        volatile boolean aborted;
+
+        Batch(final Iterator<? extends Iterable<? extends Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>>>> sequences) {
+            this.sequences = sequences;
+        }
+
+        <X extends Exception> int run(
+                final Executor executor,
+                final int parallelism,
+                final ExceptionBuilder<? super IOException, X> builder)
+        throws X {
+            if (0 >= parallelism)
+                throw new IllegalArgumentException("Parallelism not positive: " + parallelism);
+            int workers = 0;
+            while (workers < parallelism) {
+                final Worker worker = new Worker();
+                try {
+                    executor.execute(worker);
+                } catch (final RejectedExecutionException ex) {
+                    if (0 == workers) {
+                        // Run the copies in the current thread.
+                        worker.run();
+                        workers++;
+                    }
+                    break;
+                }
+                workers++;
+            }
+            boolean interrupted = false;
+            try {
+                while (0 < workers) {
+                    final Object event;
+                    try {
+                        event = events.take();
+                    } catch (final InterruptedException ex) {
+                        interrupted = true;
+                        aborted = true;
+                        continue;
+                    }
+                    if (DONE == event)
+                        workers--;
+                    else if (event instanceof IOException)
+                        builder.warn((IOException) event);
+                    else if (event instanceof RuntimeException)
+                        throw (RuntimeException) event;
+                    else
+                        throw (Error) event;
+                }
+            } finally {
+                if (0 < workers) {
+                    // Wait for the running copies before leaving.
+                    aborted = true;
+                    while (0 < workers) {
+                        try {
+                            if (DONE == events.take())
+                                workers--;
+                        } catch (final InterruptedException ex) {
+                            interrupted = true;
+                        }
+                    }
+                }
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+            }
+            builder.check();
+            return copied.get();
+        }
+
+        synchronized @Nullable Iterable<? extends Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>>> next() {
+            return !aborted && sequences.hasNext() ? sequences.next() : null;
+        }
+
+        final class Worker implements Runnable {
+            @Override
+            public void run() {
+                try {
+                    for (   Iterable<? extends Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>>> sequence;
+                            null != (sequence = next()); ) {
+                        for (final Map.Entry<? extends InputSocket<?>, ? extends OutputSocket<?>> copy : sequence) {
+                            if (aborted)
+                                break;
+                            try {
+                                copy(copy.getKey(), copy.getValue());
+                            } catch (final IOException ex) {
+                                events.add(ex);
+                                break;
+                            }
+                            copied.incrementAndGet();
+                        }
+                    }
+                } catch (final RuntimeException | Error ex) {
+                    aborted = true;
+                    events.add(ex);
+                } finally {
+                    events.add(DONE);
+                }
+            }
+        } // Worker
+    } // Batch
+
+    /**
+     * Asynchronously copies an asynchronous byte channel
+     * {@link AsyncInputSocket#channel created} by the given {@code input}
+     * socket to an asynchronous byte channel
+     * {@link AsyncOutputSocket#channel created} by the given {@code output}
+     * socket.
+     * Equivalent to
+     * {@link #copyAsync(AsyncInputSocket, AsyncOutputSocket, Object, CompletionHandler) copyAsync(input, output, null, handler)}
+     * where {@code handler} completes the returned future.
+     *
+     * @param  input an asynchronous input socket for the input target.
+     * @param  output an asynchronous output socket for the output target.
+     * @return A future for the number of bytes copied.
+     *         Cancelling it has no effect on the copy.
+     */
+    public static Future<Long> copyAsync(
+            AsyncInputSocket<?> input,
+            AsyncOutputSocket<?> output) {
+        final CompletionFuture<Long> result = new CompletionFuture<>();
+        copyAsync(input, output, null, result);
+        return result;
     }
 
-    private static class InputAdapter implements Source {
+    /**
+     * Asynchronously copies an asynchronous byte channel
+     * {@link AsyncInputSocket#channel created} by the given {@code input}
+     * socket to an asynchronous byte channel
+     * {@link AsyncOutputSocket#channel created} by the given {@code output}
+     * socket.
+     * The channels get opened by the current thread.
+     * Then the data gets copied by a chain of read and write operations,
+     * each of which starts the next one upon its completion, so no thread
+     * waits for I/O.
+     * Finally, the channels get closed and the given handler gets called with
+     * the number of bytes copied or the exception of the first failed
+     * operation.
+     *
+     * @param <A> the type of the attachment.
+     * @param input an asynchronous input socket for the input target.
+     * @param output an asynchronous output socket for the output target.
+     * @param attachment the nullable object to attach to the copy.
+     * @param handler the handler for the result of the copy.
+     */
+    public static <A> void copyAsync(
+            final AsyncInputSocket<?> input,
+            final AsyncOutputSocket<?> output,
+            final @Nullable A attachment,
+            final CompletionHandler<Long, ? super A> handler) {
+        final AsynchronousByteChannel in, out;
+        try {
+            in = input.channel(output);
+            try {
+                out = output.channel(input);
+            } catch (final Throwable ex) {
+                try {
+                    in.close();
+                } catch (final Throwable ex2) {
+                    ex.addSuppressed(ex2);
+                }
+                throw ex;
+            }
+        } catch (final IOException | RuntimeException ex) {
+            handler.failed(ex, attachment);
+            return;
+        }
+        new AsyncCopy<>(in, out, attachment, handler).proceed();
+    }
+
+    /**
+     * Adapts the given input socket to an asynchronous input socket.
+     * Each read operation gets run by the given executor, so a thread is
+     * only required while an operation is in progress.
+     * The asynchronous byte channels wrap the seekable byte channels
+     * {@link InputSocket#channel created} by the given socket or, if this is
+     * not supported, the input streams
+     * {@link InputSocket#stream created} by the given socket.
+     * The peer socket does not get passed on to the given socket because it's
+     * of an incompatible type.
+     *
+     * @param  <E> the type of the target entry.
+     * @param  socket the input socket to adapt.
+     * @param  executor the executor for running the read operations.
+     * @return An asynchronous input socket for the given input socket.
+     */
+    public static <E extends Entry> AsyncInputSocket<E> async(
+            final InputSocket<E> socket,
+            final Executor executor) {
+        return new AsyncInputSocket<E>() {
+            @Override
+            public E target() throws IOException { return socket.target(); }
+
+            @Override
+            public AsynchronousByteChannel channel(AsyncOutputSocket<? extends Entry> peer)
+            throws IOException {
+                Channel channel;
+                try {
+                    channel = socket.channel(null);
+                } catch (final UnsupportedOperationException ex) {
+                    channel = Channels.newChannel(socket.stream(null));
+                }
+                return AsyncChannels.newChannel(channel, executor);
+            }
+        };
+    }
+
+    /**
+     * Adapts the given output socket to an asynchronous output socket.
+     * Each write operation gets run by the given executor, so a thread is
+     * only required while an operation is in progress.
+     * The asynchronous byte channels wrap the seekable byte channels
+     * {@link OutputSocket#channel created} by the given socket or, if this is
+     * not supported, the output streams
+     * {@link OutputSocket#stream created} by the given socket.
+     * The peer socket does not get passed on to the given socket because it's
+     * of an incompatible type.
+     *
+     * @param  <E> the type of the target entry.
+     * @param  socket the output socket to adapt.
+     * @param  executor the executor for running the write operations.
+     * @return An asynchronous output socket for the given output socket.
+     */
+    public static <E extends Entry> AsyncOutputSocket<E> async(
+            final OutputSocket<E> socket,
+            final Executor executor) {
+        return new AsyncOutputSocket<E>() {
+            @Override
+            public E target() throws IOException { return socket.target(); }
+
+            @Override
+            public AsynchronousByteChannel channel(AsyncInputSocket<? extends Entry> peer)
+            throws IOException {
+                Channel channel;
+                try {
+                    channel = socket.channel(null);
+                } catch (final UnsupportedOperationException ex) {
+                    channel = Channels.newChannel(socket.stream(null));
+                }
+                return AsyncChannels.newChannel(channel, executor);
+            }
+        };
+    }
+
+    /**
+     * Adapts the given input socket for a file-backed target to an
+     * asynchronous input socket.
+     * The asynchronous byte channels read the given file using an
+     * {@link AsynchronousFileChannel}, so the operating system does the I/O
+     * without any thread.
+     * The given socket only gets used to resolve the target.
+     *
+     * @param  <E> the type of the target entry.
+     * @param  socket the input socket for the target.
+     * @param  file the file which backs the target.
+     * @return An asynchronous input socket for the given file.
+     */
+    public static <E extends Entry> AsyncInputSocket<E> async(
+            final InputSocket<E> socket,
+            final Path file) {
+        return new AsyncInputSocket<E>() {
+            @Override
+            public E target() throws IOException { return socket.target(); }
+
+            @Override
+            public AsynchronousByteChannel channel(AsyncOutputSocket<? extends Entry> peer)
+            throws IOException {
+                return AsyncChannels.newChannel(
+                        AsynchronousFileChannel.open(file, READ), 0);
+            }
+        };
+    }
+
+    /**
+     * Adapts the given output socket for a file-backed target to an
+     * asynchronous output socket.
+     * The asynchronous byte channels create or truncate and write the given
+     * file using an {@link AsynchronousFileChannel}, so the operating system
+     * does the I/O without any thread.
+     * The given socket only gets used to resolve the target.
+     *
+     * @param  <E> the type of the target entry.
+     * @param  socket the output socket for the target.
+     * @param  file the file which backs the target.
+     * @return An asynchronous output socket for the given file.
+     */
+    public static <E extends Entry> AsyncOutputSocket<E> async(
+            final OutputSocket<E> socket,
+            final Path file) {
+        return new AsyncOutputSocket<E>() {
+            @Override
+            public E target() throws IOException { return socket.target(); }
+
+            @Override
+            public AsynchronousByteChannel channel(AsyncInputSocket<? extends Entry> peer)
+            throws IOException {
+                return AsyncChannels.newChannel(
+                        AsynchronousFileChannel.open(file,
+                                WRITE, CREATE, TRUNCATE_EXISTING), 0);
+            }
+        };
+    }
+
+    /**
+     * Copies an asynchronous byte channel to another by a chain of read and
+     * write operations.
+     * An operation may complete synchronously, e.g. if an executor rejects
+     * it, so the completion handlers do not start the next operation
+     * directly.
+     * Instead, they call {@link #proceed}, where a work-in-progress counter
+     * makes sure that only the outermost call runs a loop which starts the
+     * next operations, while any nested call just increments the counter.
+     * This way, synchronous completions make the loop iterate rather than
+     * the stack grow.
+     */
+    private static final class AsyncCopy<A> {
+
+        final AsynchronousByteChannel input, output;
+        final @Nullable A attachment;
+        final CompletionHandler<Long, ? super A> handler;
+        final ByteBuffer buffer = ByteBuffer.allocate(Streams.BUFFER_SIZE);
+        final AtomicInteger wip = new AtomicInteger();
+        long total;
+
+        /** Whether the next operation writes or reads the buffer. */
+        boolean writing;
+
+        final CompletionHandler<Integer, Void> reader
+                = new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(final Integer read, final Void unused) {
+                if (0 > read) {
+                    close(null);
+                } else {
+                    buffer.flip();
+                    writing = true;
+                    proceed();
+                }
+            }
+
+            @Override
+            public void failed(Throwable ex, Void unused) { close(ex); }
+        };
+
+        final CompletionHandler<Integer, Void> writer
+                = new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(final Integer written, final Void unused) {
+                total += written;
+                writing = buffer.hasRemaining();
+                proceed();
+            }
+
+            @Override
+            public void failed(Throwable ex, Void unused) { close(ex); }
+        };
+
+        AsyncCopy(
+                final AsynchronousByteChannel input,
+                final AsynchronousByteChannel output,
+                final @Nullable A attachment,
+                final CompletionHandler<Long, ? super A> handler) {
+            this.input = input;
+            this.output = output;
+            this.attachment = attachment;
+            this.handler = handler;
+        }
+
+        /** Starts the next operation unless another call is running. */
+        void proceed() {
+            if (0 != wip.getAndIncrement())
+                return;
+            do {
+                if (writing)
+                    write();
+                else
+                    read();
+            } while (0 != wip.decrementAndGet());
+        }
+
+        private void read() {
+            buffer.clear();
+            try {
+                input.read(buffer, null, reader);
+            } catch (final RuntimeException ex) {
+                close(ex);
+            }
+        }
+
+        private void write() {
+            try {
+                output.write(buffer, null, writer);
+            } catch (final RuntimeException ex) {
+                close(ex);
+            }
+        }
+
+        /**
+         * Closes the output channel first in order to commit the data and
+         * then the input channel.
+         * Finally, the handler gets called.
+         *
+         * @param ex the nullable exception of the first failed operation.
+         */
+        void close(@Nullable Throwable ex) {
+            for (final AsynchronousByteChannel channel : new AsynchronousByteChannel[] { output, input }) {
+                try {
+                    channel.close();
+                } catch (final IOException | RuntimeException ex2) {
+                    if (null == ex)
+                        ex = ex2;
+                    else
+                        ex.addSuppressed(ex2);
+                }
+            }
+            if (null == ex)
+                handler.completed(total, attachment);
+            else
+                handler.failed(ex, attachment);
+        }
+    } // AsyncCopy
+
+    private static class InputAdapter implements Source, Streams.SizeHint {
 
         final InputSocket<? extends Entry> input;
         final OutputSocket<? extends Entry> output;
@@ -65,6 +679,11 @@ public final class IoSockets {
         public SeekableByteChannel channel() throws IOException {
             return input.channel(output);
         }
+
+        @Override
+        public long size() throws IOException {
+            return input.target().getSize(DATA);
+        }
     } // InputAdapter
 
     private static class OutputAdapter implements Sink {
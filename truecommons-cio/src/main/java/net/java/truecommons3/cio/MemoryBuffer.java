@@ -6,6 +6,7 @@ package net.java.truecommons3.cio;
 
 import net.java.truecommons3.io.ByteBufferChannel;
 import net.java.truecommons3.io.DisconnectingSeekableChannel;
+import net.java.truecommons3.io.SegmentedBufferChannel;
 
 import javax.annotation.Nullable;
 import java.io.FileNotFoundException;
@@ -13,7 +14,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Objects;
 
 import static net.java.truecommons3.cio.Entry.Access.READ;
@@ -32,6 +35,14 @@ import static net.java.truecommons3.cio.Entry.Access.WRITE;
  * The reference can also get explicitly set by calling the constructor
  * {@link #MemoryBuffer(String, ByteBuffer)} or the method
  * {@link #setBuffer(ByteBuffer)}.
+ * <p>
+ * If the {@linkplain #getSegmentSize() segment size} is positive, then output
+ * to this memory buffer gets written to a list of fixed-size segments instead
+ * of a single backing buffer, so growing the contents never copies them.
+ * <p>
+ * Subclasses may override {@link #allocate(int)}, {@link #recycle(ByteBuffer)}
+ * and {@link #discard(ByteBuffer)} in order to take the backing buffers for
+ * output from a pool and return them to it once they are not used anymore.
  *
  * @author Christian Schlichtherle
  */
@@ -39,7 +50,33 @@ public class MemoryBuffer implements IoBuffer {
 
     private final String name;
     private int initialCapacity;
+    private int segmentSize;
     private @Nullable ByteBuffer buffer;
+
+    /** The segments with the contents if they have been segmented. */
+    private @Nullable List<ByteBuffer> segments;
+
+    /** The size of the contents of the segments. */
+    private long segmentsSize;
+
+    /**
+     * Whether or not the backing buffer or segments have been obtained from
+     * allocate().
+     */
+    private boolean allocated;
+
+    /**
+     * Whether or not a duplicate of the allocated backing buffer has been
+     * returned by getBuffer(), so it must not get recycled.
+     */
+    private boolean exposed;
+
+    /** Backing buffers which are waiting for all readers to close. */
+    private final List<ByteBuffer> retired = new ArrayList<>();
+
+    /** The number of open input channels. */
+    private int readers;
+
     private final EnumMap<Access, Long> times = new EnumMap<>(Access.class);
     private int reads;
     private int writes;
@@ -101,19 +138,66 @@ public class MemoryBuffer implements IoBuffer {
         this.initialCapacity = initialCapacity;
     }
 
+    /**
+     * Returns the size of the segments to allocate when starting output to
+     * this memory buffer.
+     * If this is zero, then output gets written to a single backing buffer
+     * which gets copied whenever it needs to grow.
+     *
+     * @return The size of the segments to allocate when starting output to
+     *         this memory buffer.
+     */
+    public final int getSegmentSize() { return this.segmentSize; }
+
+    /**
+     * Sets the size of the segments to allocate when starting output to this
+     * memory buffer.
+     *
+     * @param segmentSize the size of the segments to allocate when starting
+     *        output to this memory buffer or zero in order to use a single
+     *        backing buffer.
+     */
+    public final void setSegmentSize(final int segmentSize) {
+        if (0 > segmentSize)
+            throw new IllegalArgumentException("Negative segment size: " + segmentSize);
+        this.segmentSize = segmentSize;
+    }
+
     /**
      * Returns a {@linkplain ByteBuffer#duplicate() duplicate} of the nullable
      * backing buffer with the contents to share with this memory buffer.
      * If the backing buffer is not set, then {@code null} is returned.
      * Otherwise, the returned buffer's position is set to zero and its limit
      * is set to the size of the contents of this memory buffer.
+     * <p>
+     * If the contents have been written to segments, then they get copied
+     * to a new backing buffer first.
+     * <p>
+     * The returned buffer shares its contents with the backing buffer, so a
+     * backing buffer which has been obtained from {@link #allocate(int)} does
+     * not get {@linkplain #recycle(ByteBuffer) recycled} anymore once it has
+     * been returned by this method.
+     * Instead, it gets {@linkplain #discard(ByteBuffer) discarded} when it
+     * gets replaced or {@linkplain #release() released}.
      *
      * @return A {@linkplain ByteBuffer#duplicate() duplicate} of the nullable
      *         backing buffer with the contents to share with this memory
      *         buffer.
      */
     public final @Nullable ByteBuffer getBuffer() {
-        return null != buffer ? buffer.duplicate() : null;
+        if (null != segments) {
+            if (Integer.MAX_VALUE < segmentsSize)
+                throw new OutOfMemoryError();
+            final ByteBuffer buffer = allocate((int) segmentsSize);
+            for (final ByteBuffer segment : segments)
+                buffer.put(segment.duplicate());
+            buffer.flip();
+            replace(buffer, null, true);
+        }
+        if (null == buffer)
+            return null;
+        exposed = allocated;
+        return buffer.duplicate();
     }
 
     /**
@@ -129,17 +213,90 @@ public class MemoryBuffer implements IoBuffer {
      *        with this memory buffer.
      */
     public final void setBuffer(final @Nullable ByteBuffer buffer) {
-        this.buffer = null != buffer
+        replace(null != buffer
                 ? (ByteBuffer) buffer.duplicate().rewind()
-                : null;
+                : null,
+                null,
+                false);
+    }
+
+    private void replace(
+            final @Nullable ByteBuffer buffer,
+            final @Nullable List<ByteBuffer> segments,
+            final boolean allocated) {
+        if (this.allocated) {
+            if (null != this.buffer) {
+                if (exposed)
+                    discard(this.buffer);
+                else
+                    retire(this.buffer);
+            }
+            if (null != this.segments)
+                for (final ByteBuffer segment : this.segments)
+                    retire(segment);
+        }
+        long segmentsSize = 0;
+        if (null != segments)
+            for (final ByteBuffer segment : segments)
+                segmentsSize += segment.limit();
+        this.buffer = buffer;
+        this.segments = segments;
+        this.segmentsSize = segmentsSize;
+        this.allocated = allocated;
+        this.exposed = false;
+    }
+
+    private void retire(final ByteBuffer buffer) {
+        if (0 == readers)
+            recycle(buffer);
+        else
+            retired.add(buffer);
+    }
+
+    /**
+     * Allocates a new backing buffer for output to this memory buffer.
+     * The implementation in the class {@link MemoryBuffer} allocates a new
+     * direct byte buffer with exactly the given capacity.
+     *
+     * @param  capacity the minimum capacity of the new backing buffer.
+     * @return A new backing buffer with a capacity of at least
+     *         {@code capacity} bytes and a position of zero.
+     */
+    protected ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity);
     }
 
+    /**
+     * Recycles a backing buffer which has been obtained from
+     * {@link #allocate(int)} once it is not used by this memory buffer
+     * anymore, i.e. when it has been grown, replaced or
+     * {@linkplain #release() released} and all input channels have been
+     * closed.
+     * The implementation in the class {@link MemoryBuffer} does nothing.
+     *
+     * @param buffer the backing buffer to recycle.
+     */
+    protected void recycle(ByteBuffer buffer) { }
+
+    /**
+     * Discards a backing buffer which has been obtained from
+     * {@link #allocate(int)} once it is not used by this memory buffer
+     * anymore, but may still get used by a client of {@link #getBuffer()}, so
+     * it must not get recycled.
+     * The implementation in the class {@link MemoryBuffer} does nothing.
+     *
+     * @param buffer the backing buffer to discard.
+     */
+    protected void discard(ByteBuffer buffer) { }
+
     @Override
     public final String getName() { return name; }
 
     @Override
     public final long getSize(Size type) {
-        return null != buffer ? buffer.limit() : UNKNOWN;
+        return null != buffer ? buffer.limit()
+                : null != segments ? segmentsSize
+                : UNKNOWN;
     }
 
     /**
@@ -172,7 +329,7 @@ public class MemoryBuffer implements IoBuffer {
     public final OutputSocket<MemoryBuffer> output() { return new Output(); }
 
     @Override
-    public void release() throws IOException { buffer = null; }
+    public void release() throws IOException { replace(null, null, false); }
 
     /**
      * Returns a string representation of this object for debugging and logging
@@ -186,16 +343,44 @@ public class MemoryBuffer implements IoBuffer {
     }
 
     private SeekableByteChannel dataInputChannel() throws FileNotFoundException {
+        if (null != segments) {
+            final List<ByteBuffer> segments = new ArrayList<>(this.segments.size());
+            for (final ByteBuffer segment : this.segments)
+                segments.add(segment.asReadOnlyBuffer());
+            return new SegmentedBufferChannel(segments);
+        }
         if (null == buffer)
             throw new FileNotFoundException();
         return new ByteBufferChannel(buffer.asReadOnlyBuffer());
     }
 
     private SeekableByteChannel dataOutputChannel() {
-        final ByteBuffer buffer = (ByteBuffer) ByteBuffer
-                .allocateDirect(initialCapacity)
+        if (0 < segmentSize) {
+            return new SegmentedBufferChannel(segmentSize, true) {
+                @Override
+                protected ByteBuffer allocate(int capacity) {
+                    return MemoryBuffer.this.allocate(capacity);
+                }
+
+                @Override
+                protected void recycle(ByteBuffer segment) {
+                    MemoryBuffer.this.recycle(segment);
+                }
+            };
+        }
+        final ByteBuffer buffer = (ByteBuffer) allocate(initialCapacity)
                 .limit(0);
-        return new ByteBufferChannel(buffer);
+        return new ByteBufferChannel(buffer) {
+            @Override
+            protected ByteBuffer allocate(int capacity, boolean direct) {
+                return MemoryBuffer.this.allocate(capacity);
+            }
+
+            @Override
+            protected void recycle(ByteBuffer buffer) {
+                MemoryBuffer.this.recycle(buffer);
+            }
+        };
     }
 
     private final class Input extends AbstractInputSocket<MemoryBuffer> {
@@ -231,17 +416,26 @@ public class MemoryBuffer implements IoBuffer {
         DataInputChannel() throws FileNotFoundException {
             super(dataInputChannel());
             reads++;
+            readers++;
         }
 
         @Override
         public boolean isOpen() { return !closed; }
 
+        @Override
+        protected boolean isTransparent() { return true; }
+
         @Override
         public void close() throws IOException {
             if (!closed) {
                 channel.close();
                 times.put(READ, System.currentTimeMillis());
                 closed = true;
+                if (0 == --readers) {
+                    for (final ByteBuffer buffer : retired)
+                        recycle(buffer);
+                    retired.clear();
+                }
             }
         }
     }
@@ -258,14 +452,24 @@ public class MemoryBuffer implements IoBuffer {
         @Override
         public boolean isOpen() { return !closed; }
 
+        @Override
+        protected boolean isTransparent() { return true; }
+
         @Override
         public void close() throws IOException {
             if (!closed) {
                 channel.close();
                 times.put(WRITE, System.currentTimeMillis());
-                buffer = (ByteBuffer) ((ByteBufferChannel) channel)
-                        .getBuffer()
-                        .rewind();
+                if (channel instanceof SegmentedBufferChannel)
+                    replace(null,
+                            ((SegmentedBufferChannel) channel).getSegments(),
+                            true);
+                else
+                    replace((ByteBuffer) ((ByteBufferChannel) channel)
+                            .getBuffer()
+                            .rewind(),
+                            null,
+                            true);
                 closed = true;
             }
         }
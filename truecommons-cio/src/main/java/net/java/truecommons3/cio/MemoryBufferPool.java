@@ -7,12 +7,26 @@ package net.java.truecommons3.cio;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * A pool of I/O buffers which share their contents with
  * {@linkplain ByteBuffer byte buffer}s.
+ * <p>
+ * If this pool gets constructed with a memory budget, then the direct byte
+ * buffers for the allocated I/O buffers get taken from slabs of power-of-two
+ * size classes.
+ * When an I/O buffer gets {@linkplain IoBuffer#release() released}, its slabs
+ * get recycled immediately rather than waiting for the garbage collector, so
+ * this pool does not run out of direct memory under load.
+ * The total capacity of all slabs is limited by the memory budget and the free
+ * slabs may retain at most half of it.
+ * Once the budget is exhausted, heap byte buffers get used instead.
+ * The slabs of memory buffers which have exposed their contents via
+ * {@link MemoryBuffer#getBuffer()} do not get recycled and only get returned
+ * to the budget once the garbage collector has collected them.
  *
  * @author Christian Schlichtherle
  */
@@ -22,19 +36,64 @@ public final class MemoryBufferPool extends IoBufferPool {
     private static final String BUFFER_NAME = "buffer-";
 
     private final int initialCapacity;
+    private final int segmentSize;
+    private final @Nullable SlabAllocator slabs;
     private final AtomicInteger total = new AtomicInteger();
     private final AtomicInteger active = new AtomicInteger();
 
     /**
-     * Constructs a new memory buffer pool.
+     * Constructs a new memory buffer pool without a memory budget.
+     * Each allocated memory buffer allocates new direct byte buffers.
      *
      * @param initialCapacity the initial capacity of the byte buffer to use
      *        for writing to an allocated memory buffer.
      */
-    public MemoryBufferPool(final int initialCapacity) {
+    public MemoryBufferPool(int initialCapacity) {
+        this(initialCapacity, 0, null);
+    }
+
+    /**
+     * Constructs a new memory buffer pool with the given memory budget.
+     * The allocated memory buffers share recycled direct byte buffers with a
+     * total capacity of at most {@code budget} bytes.
+     *
+     * @param initialCapacity the initial capacity of the byte buffer to use
+     *        for writing to an allocated memory buffer.
+     * @param budget the maximum number of bytes of direct memory to allocate.
+     */
+    public MemoryBufferPool(int initialCapacity, long budget) {
+        this(initialCapacity, 0, new SlabAllocator(budget));
+    }
+
+    /**
+     * Constructs a new memory buffer pool with the given memory budget which
+     * allocates memory buffers with the given
+     * {@linkplain MemoryBuffer#getSegmentSize() segment size}.
+     * Segmented memory buffers never copy their contents when growing.
+     *
+     * @param initialCapacity the initial capacity of the byte buffer to use
+     *        for writing to an allocated memory buffer.
+     *        This is ignored if {@code segmentSize} is positive.
+     * @param budget the maximum number of bytes of direct memory to allocate.
+     * @param segmentSize the size of the segments to use for writing to an
+     *        allocated memory buffer or zero in order to use a single byte
+     *        buffer.
+     */
+    public MemoryBufferPool(int initialCapacity, long budget, int segmentSize) {
+        this(initialCapacity, segmentSize, new SlabAllocator(budget));
+    }
+
+    private MemoryBufferPool(
+            final int initialCapacity,
+            final int segmentSize,
+            final @Nullable SlabAllocator slabs) {
         if (0 > initialCapacity)
             throw new IllegalArgumentException("Negative initial capacity: " + initialCapacity);
+        if (0 > segmentSize)
+            throw new IllegalArgumentException("Negative segment size: " + segmentSize);
         this.initialCapacity = initialCapacity;
+        this.segmentSize = segmentSize;
+        this.slabs = slabs;
     }
 
     @Override
@@ -55,6 +114,18 @@ public final class MemoryBufferPool extends IoBufferPool {
         return active.get();
     }
 
+    /**
+     * Returns the total number of bytes of direct memory allocated by this
+     * pool for the slabs, whether they are in use or free.
+     * If this pool has no memory budget, then zero is returned.
+     *
+     * @return The total number of bytes of direct memory allocated by this
+     *         pool for the slabs.
+     */
+    public long getReservedMemory() {
+        return null != slabs ? slabs.getReserved() : 0;
+    }
+
     @NotThreadSafe
     private final class Buffer extends MemoryBuffer {
 
@@ -62,6 +133,7 @@ public final class MemoryBufferPool extends IoBufferPool {
 
         Buffer(int i) {
             super(BUFFER_NAME + i, MemoryBufferPool.this.initialCapacity);
+            setSegmentSize(MemoryBufferPool.this.segmentSize);
         }
 
         @Override
@@ -71,5 +143,24 @@ public final class MemoryBufferPool extends IoBufferPool {
             super.release();
             released = true;
         }
+
+        @Override
+        protected ByteBuffer allocate(int capacity) {
+            return null != slabs
+                    ? slabs.allocate(capacity)
+                    : super.allocate(capacity);
+        }
+
+        @Override
+        protected void recycle(ByteBuffer buffer) {
+            if (null != slabs)
+                slabs.recycle(buffer);
+        }
+
+        @Override
+        protected void discard(ByteBuffer buffer) {
+            if (null != slabs)
+                slabs.discard(buffer);
+        }
     }
 }
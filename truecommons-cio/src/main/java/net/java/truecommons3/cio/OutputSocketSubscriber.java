@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio;
+
+import net.java.truecommons3.io.CompletionFuture;
+import net.java.truecommons3.shed.Pool;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+import java.util.concurrent.Future;
+
+/**
+ * Consumes a back-pressured stream of byte buffers into the target of an
+ * output socket.
+ * <p>
+ * Upon subscription, this subscriber writes a channel
+ * {@link OutputSocket#channel created} by the output socket or, if this is
+ * not supported, an output stream {@link OutputSocket#stream created} by the
+ * output socket.
+ * It requests {@value #PREFETCH} byte buffers in advance and then another
+ * one for each byte buffer received, so the publisher can read the next
+ * byte buffer while this subscriber is writing the current one.
+ * Each received byte buffer gets written in the thread which calls
+ * {@link #onNext} and then {@linkplain Pool#release released} to the pool,
+ * if any.
+ * The data gets committed when the stream completes.
+ * The outcome is available from {@link #getResult()}.
+ * <p>
+ * An instance of this class can only subscribe once.
+ *
+ * @see    InputSocketPublisher
+ * @author Christian Schlichtherle
+ */
+@NotThreadSafe
+public final class OutputSocketSubscriber
+implements Flow.Subscriber<ByteBuffer> {
+
+    /** The number of byte buffers to request in advance, which is {@value}. */
+    public static final int PREFETCH = 2;
+
+    private final OutputSocket<?> socket;
+    private final @Nullable Pool<ByteBuffer, ? extends RuntimeException> pool;
+    private final CompletionFuture<Long> result = new CompletionFuture<>();
+
+    private @Nullable Flow.Subscription subscription;
+    private @Nullable WritableByteChannel channel;
+    private long total;
+
+    /**
+     * Constructs a new output socket subscriber.
+     *
+     * @param socket the output socket for the entry to write.
+     * @param pool the nullable pool for releasing the received byte buffers.
+     */
+    public OutputSocketSubscriber(
+            final OutputSocket<?> socket,
+            final @Nullable Pool<ByteBuffer, ? extends RuntimeException> pool) {
+        this.socket = Objects.requireNonNull(socket);
+        this.pool = pool;
+    }
+
+    /**
+     * Returns a future for the outcome of the subscription.
+     * On success, the future returns the number of bytes written.
+     * Otherwise, it fails with the error of the publisher or the
+     * {@link IOException} of the output socket.
+     *
+     * @return A future for the outcome of the subscription.
+     */
+    public Future<Long> getResult() { return result; }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        if (null != this.subscription || result.isDone()) {
+            subscription.cancel();
+            return;
+        }
+        try {
+            channel = open();
+        } catch (final IOException | RuntimeException ex) {
+            subscription.cancel();
+            result.failed(ex, null);
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(PREFETCH);
+    }
+
+    private WritableByteChannel open() throws IOException {
+        try {
+            return socket.channel(null);
+        } catch (final UnsupportedOperationException ex) {
+            return Channels.newChannel(socket.stream(null));
+        }
+    }
+
+    @Override
+    public void onNext(final ByteBuffer item) {
+        final WritableByteChannel channel = this.channel;
+        if (null == channel) {
+            release(item);
+            return;
+        }
+        try {
+            while (item.hasRemaining())
+                total += channel.write(item);
+        } catch (final IOException | RuntimeException ex) {
+            final Flow.Subscription subscription = this.subscription;
+            assert null != subscription;
+            subscription.cancel();
+            fail(ex);
+            return;
+        } finally {
+            release(item);
+        }
+        final Flow.Subscription subscription = this.subscription;
+        assert null != subscription;
+        subscription.request(1);
+    }
+
+    private void release(final ByteBuffer item) {
+        if (null != pool)
+            pool.release(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) { fail(throwable); }
+
+    @Override
+    public void onComplete() {
+        final WritableByteChannel channel = this.channel;
+        if (null == channel)
+            return;
+        this.channel = null;
+        try {
+            channel.close();
+        } catch (final IOException | RuntimeException ex) {
+            result.failed(ex, null);
+            return;
+        }
+        result.completed(total, null);
+    }
+
+    /** Closes the channel, if any, and fails the result. */
+    private void fail(final Throwable ex) {
+        final WritableByteChannel channel = this.channel;
+        if (null != channel) {
+            this.channel = null;
+            try {
+                channel.close();
+            } catch (final IOException | RuntimeException ex2) {
+                ex.addSuppressed(ex2);
+            }
+        }
+        result.failed(ex, null);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio;
+
+import net.java.truecommons3.io.DirectBuffers;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Allocates direct byte buffers from slabs of power-of-two size classes and
+ * recycles them for subsequent allocations.
+ * Direct memory is only released by the garbage collector, so recycling the
+ * slabs avoids running out of direct memory under load.
+ * <p>
+ * The total capacity of all slabs reserved by this allocator is limited by a
+ * memory budget.
+ * If the budget is exhausted and there is no free slab of the required size
+ * class, then a heap byte buffer of exactly the required capacity gets
+ * allocated instead.
+ * Heap byte buffers do not get recycled.
+ * <p>
+ * The free slabs may retain at most half of the budget.
+ * A slab which gets recycled beyond this limit gets
+ * {@linkplain DirectBuffers#release released} immediately and its capacity
+ * gets returned to the budget, so a burst of allocations of one size class
+ * does not keep the budget from serving other size classes later on.
+ * <p>
+ * A slab which cannot get released immediately, e.g. because it has been
+ * {@linkplain #discard discarded} while it may still get used, keeps its
+ * capacity reserved until the garbage collector has collected it, so the
+ * direct memory in use never exceeds the budget.
+ *
+ * @author Christian Schlichtherle
+ */
+@ThreadSafe
+final class SlabAllocator {
+
+    /** The binary logarithm of the smallest size class. */
+    private static final int MIN_SHIFT = 12;
+
+    /** The binary logarithm of the largest size class. */
+    private static final int MAX_SHIFT = 30;
+
+    private final long budget;
+    private final long maxFree;
+    private final AtomicLong reserved = new AtomicLong();
+    private final AtomicLong free = new AtomicLong();
+    private final Queue<ByteBuffer>[] slabs;
+
+    /** The slabs which are left to the garbage collector. */
+    private final Set<Slab> collectable
+            = Collections.newSetFromMap(new ConcurrentHashMap<Slab, Boolean>());
+    private final ReferenceQueue<ByteBuffer> collected = new ReferenceQueue<>();
+
+    @SuppressWarnings("unchecked")
+    SlabAllocator(final long budget) {
+        if (0 > budget)
+            throw new IllegalArgumentException("Negative budget: " + budget);
+        this.budget = budget;
+        this.maxFree = budget / 2;
+        final Queue<ByteBuffer>[] slabs
+                = new Queue[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = slabs.length; 0 <= --i; )
+            slabs[i] = new ConcurrentLinkedQueue<>();
+        this.slabs = slabs;
+    }
+
+    /** Returns the memory budget for all slabs in bytes. */
+    long getBudget() { return budget; }
+
+    /**
+     * Returns the total capacity of all slabs reserved by this allocator,
+     * whether they are in use, free or waiting for the garbage collector.
+     */
+    long getReserved() {
+        expunge();
+        return reserved.get();
+    }
+
+    /** Returns the total capacity of the free slabs. */
+    long getFree() { return free.get(); }
+
+    /**
+     * Returns a cleared byte buffer with a capacity of at least the given
+     * number of bytes.
+     */
+    ByteBuffer allocate(final int capacity) {
+        final int shift = shift(capacity);
+        if (MAX_SHIFT < shift)
+            return ByteBuffer.allocate(capacity);
+        final int size = 1 << shift;
+        final ByteBuffer slab = slabs[shift - MIN_SHIFT].poll();
+        if (null != slab) {
+            free.addAndGet(-size);
+            return (ByteBuffer) slab.clear();
+        }
+        return reserve(size)
+                ? ByteBuffer.allocateDirect(size)
+                : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Returns the given byte buffer to the free list of its size class.
+     * The given byte buffer must have been obtained from {@link #allocate}
+     * and must not get used anymore.
+     * If the free slabs would exceed half of the budget, then the given byte
+     * buffer gets released immediately instead and its capacity gets
+     * returned to the budget.
+     * Heap byte buffers get ignored.
+     */
+    void recycle(final ByteBuffer buffer) {
+        if (!buffer.isDirect())
+            return;
+        final int size = buffer.capacity();
+        if (maxFree < free.addAndGet(size)) {
+            free.addAndGet(-size);
+            if (DirectBuffers.release(buffer))
+                reserved.addAndGet(-size);
+            else
+                discard(buffer);
+            return;
+        }
+        slabs[shift(size) - MIN_SHIFT].add(buffer);
+    }
+
+    /**
+     * Leaves the given byte buffer to the garbage collector without recycling
+     * it.
+     * The given byte buffer must have been obtained from {@link #allocate}.
+     * It may still get used, e.g. by a client which has obtained a duplicate
+     * of it, so its capacity only gets returned to the budget once the
+     * garbage collector has collected it.
+     * Heap byte buffers get ignored.
+     */
+    void discard(final ByteBuffer buffer) {
+        if (buffer.isDirect())
+            collectable.add(new Slab(buffer, collected));
+    }
+
+    /**
+     * Returns the capacity of the slabs which have been collected by the
+     * garbage collector to the budget.
+     */
+    private void expunge() {
+        for (Reference<? extends ByteBuffer> ref; null != (ref = collected.poll()); ) {
+            final Slab slab = (Slab) ref;
+            if (collectable.remove(slab))
+                reserved.addAndGet(-slab.capacity);
+        }
+    }
+
+    private boolean reserve(final int size) {
+        expunge();
+        while (true) {
+            final long reserved = this.reserved.get();
+            if (budget - size < reserved)
+                return false;
+            if (this.reserved.compareAndSet(reserved, reserved + size))
+                return true;
+        }
+    }
+
+    /** A reference to a slab which is left to the garbage collector. */
+    private static final class Slab extends PhantomReference<ByteBuffer> {
+
+        final int capacity;
+
+        Slab(final ByteBuffer buffer, final ReferenceQueue<ByteBuffer> queue) {
+            super(buffer, queue);
+            this.capacity = buffer.capacity();
+        }
+    } // Slab
+
+    /**
+     * Returns the binary logarithm of the smallest size class which can
+     * hold the given number of bytes.
+     */
+    private static int shift(final int capacity) {
+        return capacity <= 1 << MIN_SHIFT
+                ? MIN_SHIFT
+                : Integer.SIZE - Integer.numberOfLeadingZeros(capacity - 1);
+    }
+
+    /**
+     * Returns a string representation of this object for debugging and logging
+     * purposes.
+     */
+    @Override
+    public String toString() {
+        return String.format("%s[budget=%d, reserved=%d, free=%d]",
+                getClass().getName(), getBudget(), getReserved(), getFree());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio
+
+import net.java.truecommons3.cio.Entry._
+import org.junit.runner._
+import org.scalatest.Matchers._
+import org.scalatest._
+import org.scalatest.junit._
+
+import scala.collection.JavaConverters._
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class EntryTableTest extends WordSpec {
+
+  def permitted(entry: Entry, access: Access, entity: Entity) =
+    Option(entry isPermitted (access, entity)) map (_.booleanValue)
+
+  "An EntryTable" when {
+    "constructed" should {
+      "reject an invalid initial capacity" in {
+        intercept[IllegalArgumentException](new EntryTable(-1))
+        intercept[IllegalArgumentException](new EntryTable(Int.MaxValue))
+        intercept[IllegalArgumentException](new EntryTable((1 << 28) + 1))
+      }
+    }
+
+    "adding entries" should {
+      "look them up by name and iterate them in added order" in {
+        val table = new EntryTable(1)
+        val names = ((1 to 10000) map ("dir/entry-" + _)) :+ "\u00e4\u00f6\u00fc/\u20ac"
+        names foreach (table add _)
+        table.size should be (names.size)
+        (table.asScala map (_.getName)).toSeq should equal (names)
+        for (name <- names)
+          table.entry(name).getName should be (name)
+        table entry "dir/entry-0" should be (null)
+        table entry "dir/" should be (null)
+      }
+
+      "return the existing entry for a duplicate name" in {
+        val table = new EntryTable
+        val a = table add "a"
+        a setSize (Size.DATA, 1)
+        val b = table add "a"
+        b should equal (a)
+        b.hashCode should be (a.hashCode)
+        b getSize Size.DATA should be (1)
+        table.size should be (1)
+      }
+    }
+
+    "setting properties" should {
+      "store the permissions for all access types and entities independently" in {
+        val entry = new EntryTable add "a"
+        val pairs = for (access <- Access.values; entity <- PosixEntity.values) yield (access, entity)
+        for (((access, entity), i) <- pairs.zipWithIndex)
+          entry setPermitted (access, entity, i % 3 match {
+            case 0 => null
+            case 1 => true
+            case _ => false
+          })
+        for (((access, entity), i) <- pairs.zipWithIndex)
+          permitted(entry, access, entity) should be (i % 3 match {
+            case 0 => None
+            case 1 => Some(true)
+            case _ => Some(false)
+          })
+      }
+
+
+      "store them in the columns" in {
+        val table = new EntryTable
+        val entry = table add "a"
+        entry getSize Size.DATA should be (UNKNOWN)
+        entry getTime Access.WRITE should be (UNKNOWN)
+        permitted(entry, Access.READ, PosixEntity.USER) should be (None)
+        entry setSize (Size.STORAGE, 123L) should be (true)
+        entry setTime (Access.WRITE, 456L) should be (true)
+        entry setPermitted (Access.READ, PosixEntity.USER, true) should be (true)
+        entry setPermitted (Access.WRITE, PosixEntity.OTHER, false) should be (true)
+        entry setPermitted (Access.READ, new Entity { }, true) should be (false)
+        val view = table entry "a"
+        view getSize Size.STORAGE should be (123L)
+        view getSize Size.DATA should be (UNKNOWN)
+        view getTime Access.WRITE should be (456L)
+        permitted(view, Access.READ, PosixEntity.USER) should be (Some(true))
+        permitted(view, Access.WRITE, PosixEntity.OTHER) should be (Some(false))
+        permitted(view, Access.WRITE, PosixEntity.USER) should be (None)
+        intercept[IllegalArgumentException](entry setSize (Size.DATA, -2))
+      }
+
+      "copy them from another entry" in {
+        val buffer = new MemoryBuffer("buffer", 0)
+        buffer.output stream null close ()
+        val table = new EntryTable
+        val entry = table add buffer
+        entry.getName should be ("buffer")
+        entry getSize Size.DATA should be (0)
+        entry getTime Access.WRITE should be (buffer getTime Access.WRITE)
+      }
+    }
+  }
+}
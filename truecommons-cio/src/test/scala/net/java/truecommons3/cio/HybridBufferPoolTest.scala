@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio
+
+import java.io._
+import java.nio.file._
+
+import global.namespace.scala.plus.ResourceLoan._
+import net.java.truecommons3.cio.Entry._
+import org.junit.runner._
+import org.scalatest.Matchers._
+import org.scalatest._
+import org.scalatest.junit._
+
+import scala.collection.JavaConverters._
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class HybridBufferPoolTest extends WordSpec {
+
+  import HybridBufferPoolTest._
+  import IoBufferTestUtils._
+
+  "A hybrid buffer pool" should {
+    "buffer small contents in memory" in {
+      withTempDir { dir =>
+        val pool = new HybridBufferPool(16, 1000, 10000, dir)
+        val buffer = pool.allocate
+        val data = random(1000)
+        write(buffer, data)
+        pool.getMemory should be (1000)
+        files(dir) should be (0)
+        read(buffer) should equal (data)
+        buffer release ()
+        pool.getMemory should be (0)
+        pool.size should be (0)
+      }
+    }
+
+    "spill large contents to a temporary file" in {
+      withTempDir { dir =>
+        val pool = new HybridBufferPool(16, 1000, 10000, dir)
+        val buffer = pool.allocate
+        val data = random(1001)
+        write(buffer, data)
+        pool.getMemory should be (0)
+        files(dir) should be (1)
+        read(buffer) should equal (data)
+        buffer release ()
+        files(dir) should be (0)
+      }
+    }
+
+    "spill contents to a temporary file if the memory budget is exhausted" in {
+      withTempDir { dir =>
+        val pool = new HybridBufferPool(16, 1000, 1500, dir)
+        val b1 = pool.allocate
+        val d1 = random(1000)
+        write(b1, d1)
+        val b2 = pool.allocate
+        val d2 = random(1000)
+        write(b2, d2)
+        pool.getMemory should be (1000)
+        files(dir) should be (1)
+        read(b1) should equal (d1)
+        read(b2) should equal (d2)
+        b1 release ()
+        b2 release ()
+        pool.getMemory should be (0)
+        files(dir) should be (0)
+      }
+    }
+
+    "replace the contents when writing again" in {
+      withTempDir { dir =>
+        val pool = new HybridBufferPool(16, 1000, 10000, dir)
+        val buffer = pool.allocate
+        write(buffer, random(2000))
+        files(dir) should be (1)
+        val data = random(500)
+        write(buffer, data)
+        files(dir) should be (0)
+        pool.getMemory should be (500)
+        read(buffer) should equal (data)
+        buffer release ()
+      }
+    }
+
+    "not delete a temporary file while reading it" when {
+      "replacing the contents" in {
+        withTempDir { dir =>
+          val pool = new HybridBufferPool(16, 1000, 10000, dir)
+          val buffer = pool.allocate
+          val d1 = random(2000)
+          write(buffer, d1)
+          val in = buffer.input stream null
+          try {
+            val d2 = random(3000)
+            write(buffer, d2)
+            files(dir) should be (2)
+            read(buffer) should equal (d2)
+            val a1 = new Array[Byte](d1.length)
+            new DataInputStream(in) readFully a1
+            a1 should equal (d1)
+          } finally {
+            in close ()
+          }
+          files(dir) should be (1)
+          buffer release ()
+          files(dir) should be (0)
+        }
+      }
+
+      "releasing the buffer" in {
+        withTempDir { dir =>
+          val pool = new HybridBufferPool(16, 1000, 10000, dir)
+          val buffer = pool.allocate
+          val data = random(2000)
+          write(buffer, data)
+          val in = buffer.input stream null
+          try {
+            buffer release ()
+            files(dir) should be (1)
+            val array = new Array[Byte](data.length)
+            new DataInputStream(in) readFully array
+            array should equal (data)
+          } finally {
+            in close ()
+          }
+          files(dir) should be (0)
+        }
+      }
+    }
+
+    "discard the contents of an open output stream when releasing the buffer" when {
+      "buffering in memory" in {
+        withTempDir { dir =>
+          val pool = new HybridBufferPool(16, 1000, 10000, dir)
+          val buffer = pool.allocate
+          val out = buffer.output stream null
+          out write random(500)
+          pool.getMemory should be (500)
+          buffer release ()
+          pool.getMemory should be (0)
+          out close ()
+          pool.getMemory should be (0)
+          buffer getSize Size.DATA should be (UNKNOWN)
+        }
+      }
+
+      "spilling to a temporary file" in {
+        withTempDir { dir =>
+          val pool = new HybridBufferPool(16, 1000, 10000, dir)
+          val buffer = pool.allocate
+          val out = buffer.output stream null
+          out write random(2000)
+          files(dir) should be (1)
+          buffer release ()
+          files(dir) should be (0)
+          out close ()
+          files(dir) should be (0)
+          buffer getSize Size.DATA should be (UNKNOWN)
+          intercept[FileNotFoundException](buffer.input stream null)
+        }
+      }
+    }
+
+    "reserve the capacity of the buffers rather than the size of their contents" in {
+      withTempDir { dir =>
+        val pool = new HybridBufferPool(16, 1000, 10000, dir)
+        val buffer = pool.allocate
+        val data = random(1000)
+        val out = buffer.output stream null
+        pool.getMemory should be (16)
+        out write (data, 0, 100)
+        pool.getMemory should be (100)
+        out write (data, 100, 200)
+        pool.getMemory should be (300)
+        out write (data, 300, 100)
+        pool.getMemory should be (600)
+        out write (data, 400, 600)
+        pool.getMemory should be (1000)
+        out close ()
+        files(dir) should be (0)
+        read(buffer) should equal (data)
+        buffer release ()
+        pool.getMemory should be (0)
+      }
+    }
+
+    "fail with a FileNotFoundException when reading an empty buffer" in {
+      val buffer = new HybridBufferPool(16, 1000, 10000).allocate
+      buffer getSize Size.DATA should be (UNKNOWN)
+      intercept[FileNotFoundException](buffer.input stream null)
+    }
+  }
+}
+
+private object HybridBufferPoolTest {
+
+  def files(dir: Path) =
+    loan (Files newDirectoryStream dir) to (_.asScala.size)
+
+  def withTempDir(test: Path => Any) {
+    val dir = Files createTempDirectory "tcio"
+    try {
+      test(dir)
+    } finally {
+      loan (Files newDirectoryStream dir) to (_.asScala foreach Files.delete)
+      Files delete dir
+    }
+  }
+}
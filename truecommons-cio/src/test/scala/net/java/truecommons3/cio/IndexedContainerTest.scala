@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio
+
+import org.junit.runner._
+import org.scalatest.Matchers._
+import org.scalatest._
+import org.scalatest.junit._
+
+import scala.collection.JavaConverters._
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class IndexedContainerTest extends WordSpec {
+
+  def entry(name: String) = new MemoryBuffer(name, 0)
+
+  def container(names: String*) =
+    new IndexedContainer[MemoryBuffer]((names map entry).asJava)
+
+  def names(entries: java.lang.Iterable[MemoryBuffer]) = entries.asScala.map(_.getName).toSeq
+
+  "An IndexedContainer" when {
+    "adding entries" should {
+      "look them up by name and iterate them in added order" in {
+        val c = container("b", "a/", "a/x", "c")
+        c.size should be (4)
+        c.entry("a/x").getName should be ("a/x")
+        c.entry("a") should be (null)
+        names(c) should equal (Seq("b", "a/", "a/x", "c"))
+      }
+
+      "replace an entry with the same name in place" in {
+        val c = container("a", "b")
+        val b = entry("a")
+        c add b should not be (null)
+        c.size should be (2)
+        c entry "a" should be theSameInstanceAs b
+        names(c) should equal (Seq("a", "b"))
+      }
+    }
+
+    "querying entries" should {
+      "return the entries with a common prefix or in a range of names" in {
+        val c = container("b/y", "a/", "a/x", "a/y/z", "a-", "b/", "c")
+        names(c prefixed "a/") should equal (Seq("a/", "a/x", "a/y/z"))
+        names(c prefixed "") should equal (Seq("a-", "a/", "a/x", "a/y/z", "b/", "b/y", "c"))
+        names(c range ("a/x", "b/y")) should equal (Seq("a/x", "a/y/z", "b/"))
+      }
+
+      "update the sorted index incrementally" in {
+        val c = container("a/x")
+        names(c prefixed "a/") should equal (Seq("a/x"))
+        c add entry("a/w")
+        c remove "a/x"
+        names(c prefixed "a/") should equal (Seq("a/w"))
+      }
+
+      "list the members of a directory" in {
+        val c = container("a/", "a/b.txt", "a/b/", "a/b/c", "a/b/d/e", "a/c/d", "a/c-d", "b")
+        (c members "a").asScala should equal (Seq("a/b.txt", "a/b/", "a/c-d", "a/c/"))
+        (c members "a/").asScala should equal (Seq("a/b.txt", "a/b/", "a/c-d", "a/c/"))
+        (c members "a/b").asScala should equal (Seq("a/b/c", "a/b/d/"))
+        (c members "").asScala should equal (Seq("a/", "b"))
+        (c members "x").asScala should be (empty)
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio
+
+import java.io._
+import java.nio._
+import java.util.concurrent._
+import java.util.concurrent.atomic._
+
+import net.java.truecommons3.shed.Pool
+import org.junit.runner._
+import org.scalatest.Matchers._
+import org.scalatest._
+import org.scalatest.junit._
+
+import scala.collection.mutable.ArrayBuffer
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class InputSocketPublisherTest extends WordSpec {
+
+  import InputSocketPublisherTest._
+  import IoBufferTestUtils._
+
+  "An InputSocketPublisher" when {
+    "subscribed by an OutputSocketSubscriber" should {
+      "copy the data with a bounded number of byte buffers" in {
+        val executor = Executors newFixedThreadPool 2
+        try {
+          val data = random(100000)
+          val input = buffer(data)
+          val output = new MemoryBuffer("output", 0)
+          val pool = new CountingPool(new ByteBufferPool(4096, 1024 * 1024))
+          val subscriber = new OutputSocketSubscriber(output.output, pool)
+          new InputSocketPublisher(input.input, pool, executor) subscribe subscriber
+          subscriber.getResult get (10, TimeUnit.SECONDS) should be (100000)
+          read(output) should equal (data)
+          pool.active.get should be (0)
+          pool.max.get should be <= OutputSocketSubscriber.PREFETCH
+        } finally {
+          executor shutdown ()
+        }
+      }
+
+      "report the exception of the input socket" in {
+        val pool = new ByteBufferPool(4096, 0)
+        val subscriber = new OutputSocketSubscriber(new MemoryBuffer("output", 0).output, pool)
+        new InputSocketPublisher(new MemoryBuffer("empty", 0).input, pool, SameThread) subscribe subscriber
+        intercept[ExecutionException](subscriber.getResult.get).getCause shouldBe an[IOException]
+      }
+    }
+
+    "subscribed by any subscriber" should {
+      "stop publishing when cancelled" in {
+        val pool = new ByteBufferPool(16, 0)
+        val events = ArrayBuffer[Any]()
+        new InputSocketPublisher(buffer(random(100)).input, pool, SameThread) subscribe new Flow.Subscriber[ByteBuffer] {
+          var subscription: Flow.Subscription = _
+          def onSubscribe(subscription: Flow.Subscription) { this.subscription = subscription; subscription request 1 }
+          def onNext(item: ByteBuffer) { events += item.remaining; subscription cancel (); subscription request 1 }
+          def onError(throwable: Throwable) { events += throwable }
+          def onComplete() { events += "complete" }
+        }
+        events should equal (Seq(16))
+      }
+
+      "signal an error on a non-positive demand" in {
+        val pool = new ByteBufferPool(16, 0)
+        val events = ArrayBuffer[Any]()
+        new InputSocketPublisher(buffer(random(100)).input, pool, SameThread) subscribe new Flow.Subscriber[ByteBuffer] {
+          def onSubscribe(subscription: Flow.Subscription) { subscription request 0 }
+          def onNext(item: ByteBuffer) { events += item }
+          def onError(throwable: Throwable) { events += throwable.getClass }
+          def onComplete() { events += "complete" }
+        }
+        events should equal (Seq(classOf[IllegalArgumentException]))
+      }
+    }
+  }
+}
+
+private object InputSocketPublisherTest {
+
+  object SameThread extends Executor {
+    def execute(command: Runnable) { command run () }
+  }
+
+  class CountingPool(pool: Pool[ByteBuffer, RuntimeException]) extends Pool[ByteBuffer, RuntimeException] {
+    val active, max = new AtomicInteger
+
+    def allocate() = {
+      val n = active.incrementAndGet
+      var m = max.get
+      while (m < n && !max.compareAndSet(m, n))
+        m = max.get
+      pool.allocate
+    }
+
+    def release(buffer: ByteBuffer) {
+      active.decrementAndGet
+      pool release buffer
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio
+
+import java.io._
+
+import global.namespace.scala.plus.ResourceLoan._
+import net.java.truecommons3.cio.Entry._
+import org.scalatest.Matchers._
+
+import scala.util._
+
+/** @author Christian Schlichtherle */
+private object IoBufferTestUtils {
+
+  def random(length: Int) = {
+    val data = new Array[Byte](length)
+    Random nextBytes data
+    data
+  }
+
+  def buffer(data: Array[Byte]) = {
+    val buffer = new MemoryBuffer("input", 0)
+    write(buffer, data)
+    buffer
+  }
+
+  def write(buffer: IoBuffer, data: Array[Byte]) {
+    loan (buffer.output stream null) to (_ write data)
+    buffer getSize Size.DATA should be (data.length)
+  }
+
+  def read(buffer: IoBuffer) = {
+    val data = new Array[Byte](buffer.getSize(Size.DATA).toInt)
+    loan (buffer.input stream null) to { in =>
+      new DataInputStream(in) readFully data
+      in.read should be (-1)
+    }
+    data
+  }
+}
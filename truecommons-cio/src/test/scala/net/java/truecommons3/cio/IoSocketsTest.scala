@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio
+
+import java.io._
+import java.nio._
+import java.nio.channels._
+import java.nio.file._
+import java.util.AbstractMap.SimpleImmutableEntry
+import java.util.concurrent._
+import java.util.concurrent.atomic._
+
+import net.java.truecommons3.io.DecoratingSeekableChannel
+import org.junit.runner._
+import org.scalatest.Matchers._
+import org.scalatest._
+import org.scalatest.junit._
+
+import scala.collection.JavaConverters._
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class IoSocketsTest extends WordSpec {
+
+  import IoBufferTestUtils._
+  import IoSocketsTest._
+
+  "IoSockets" when {
+    "copying all pairs of sockets" should {
+      "copy each input to its output" in {
+        withExecutor { executor =>
+          val inputs = for (i <- 1 to 20) yield buffer(random(1000 * i))
+          val outputs = for (_ <- inputs) yield new MemoryBuffer("output", 0)
+          IoSockets copyAll (pairs(inputs zip outputs), executor, 4) should be (20)
+          for ((input, output) <- inputs zip outputs)
+            read(output) should equal (read(input))
+        }
+      }
+
+      "aggregate the exceptions of failed copies" in {
+        withExecutor { executor =>
+          val inputs = Seq(buffer(random(10)), new MemoryBuffer("empty", 0), new MemoryBuffer("empty", 0))
+          val outputs = for (_ <- inputs) yield new MemoryBuffer("output", 0)
+          val ex = intercept[IOException](IoSockets copyAll (pairs(inputs zip outputs), executor, 2))
+          ex.getSuppressed should have size 1
+          read(outputs.head) should equal (read(inputs.head))
+        }
+      }
+
+      "run the copies in the current thread if the executor rejects them" in {
+        val executor = Executors newSingleThreadExecutor ()
+        executor shutdown ()
+        val input = buffer(random(100))
+        val output = new MemoryBuffer("output", 0)
+        IoSockets copyAll (pairs(Seq(input -> output)), executor, 2) should be (1)
+        read(output) should equal (read(input))
+      }
+
+      "reject a non-positive parallelism" in {
+        intercept[IllegalArgumentException](IoSockets copyAll (pairs(Seq.empty), Executors newSingleThreadExecutor (), 0))
+      }
+    }
+
+    "copying all sequences of pairs of sockets" should {
+      "copy the pairs of each sequence one after another" in {
+        withExecutor { executor =>
+          val log = new ConcurrentLinkedQueue[(Int, Int)]
+          val sequences = for (s <- 1 to 4) yield {
+            val running = new AtomicBoolean
+            (for (i <- 1 to 10) yield {
+              pair(buffer(random(10000)).input, new DecoratingOutputSocket[Entry](new MemoryBuffer("output", 0).output) {
+                override def stream(peer: InputSocket[_ <: Entry]) = {
+                  running getAndSet true should be (false)
+                  log add (s -> i)
+                  new FilterOutputStream(super.stream(peer)) {
+                    override def close() {
+                      super.close()
+                      running set false
+                    }
+                  }
+                }
+                override def channel(peer: InputSocket[_ <: Entry]) = throw new UnsupportedOperationException
+              })
+            }).asJava
+          }
+          IoSockets copyAllOrdered (sequences.asJava, executor, 4) should be (40)
+          for (s <- 1 to 4)
+            log.asScala.toSeq filter (_._1 == s) map (_._2) should equal (1 to 10)
+        }
+      }
+
+      "skip the remaining pairs of a sequence after a failed copy" in {
+        withExecutor { executor =>
+          val outputs = for (_ <- 1 to 3) yield new MemoryBuffer("output", 0)
+          val inputs = Seq(buffer(random(10)), new MemoryBuffer("empty", 0), buffer(random(10)))
+          intercept[IOException] {
+            IoSockets copyAllOrdered (Seq(pairs(inputs zip outputs)).asJava, executor, 2)
+          }
+          read(outputs.head) should equal (read(inputs.head))
+          outputs.last getSize Entry.Size.DATA should be (Entry.UNKNOWN)
+        }
+      }
+    }
+
+    "copying asynchronously" should {
+      "copy the input to the output using an executor" in {
+        withExecutor { executor =>
+          val input = buffer(random(100000))
+          val output = new MemoryBuffer("output", 0)
+          val result = IoSockets copyAsync (IoSockets async (input.input, executor), IoSockets async (output.output, executor))
+          result.get should be (100000)
+          read(output) should equal (read(input))
+        }
+      }
+
+      "copy a file to a file" in {
+        val data = random(100000)
+        val from = Files createTempFile (null, null)
+        val to = Files createTempFile (null, null)
+        try {
+          Files write (from, data)
+          val input = new MemoryBuffer("input", 0).input
+          val output = new MemoryBuffer("output", 0).output
+          val result = new ArrayBlockingQueue[Either[Throwable, java.lang.Long]](1)
+          IoSockets copyAsync (IoSockets async (input, from), IoSockets async (output, to), result,
+            new CompletionHandler[java.lang.Long, ArrayBlockingQueue[Either[Throwable, java.lang.Long]]] {
+              def completed(copied: java.lang.Long, queue: ArrayBlockingQueue[Either[Throwable, java.lang.Long]]) { queue put Right(copied) }
+              def failed(ex: Throwable, queue: ArrayBlockingQueue[Either[Throwable, java.lang.Long]]) { queue put Left(ex) }
+            })
+          result.take should be (Right(100000L))
+          Files readAllBytes to should equal (data)
+        } finally {
+          Files delete to
+          Files delete from
+        }
+      }
+
+      "copy in the current thread without growing the stack if the executor rejects all operations" in {
+        val executor = new Executor {
+          def execute(command: Runnable) { throw new RejectedExecutionException }
+        }
+        val data = random(100000)
+        val input = new DecoratingInputSocket[Entry](buffer(data).input) {
+          override def channel(peer: OutputSocket[_ <: Entry]) = {
+            new DecoratingSeekableChannel(super.channel(peer)) {
+              override def read(dst: ByteBuffer) = {
+                val limit = dst.limit
+                if (dst.hasRemaining)
+                  dst limit (dst.position + 1)
+                try {
+                  super.read(dst)
+                } finally {
+                  dst limit limit
+                }
+              }
+            }
+          }
+        }
+        val output = new MemoryBuffer("output", 0)
+        val result = IoSockets copyAsync (IoSockets async (input, executor), IoSockets async (output.output, executor))
+        result.isDone should be (true)
+        result.get should be (100000)
+        read(output) should equal (data)
+      }
+
+      "report an error of an operation as a failed copy" in {
+        withExecutor { executor =>
+          val input = new DecoratingInputSocket[Entry](buffer(random(10)).input) {
+            override def channel(peer: OutputSocket[_ <: Entry]) = {
+              new DecoratingSeekableChannel(super.channel(peer)) {
+                override def read(dst: ByteBuffer) = throw new AssertionError
+              }
+            }
+          }
+          val output = new MemoryBuffer("output", 0)
+          val result = IoSockets copyAsync (IoSockets async (input, executor), IoSockets async (output.output, executor))
+          intercept[ExecutionException](result get (10, TimeUnit.SECONDS)).getCause shouldBe an[AssertionError]
+        }
+      }
+
+      "report the exception of a failed copy" in {
+        withExecutor { executor =>
+          val input = new MemoryBuffer("empty", 0)
+          val output = new MemoryBuffer("output", 0)
+          val result = IoSockets copyAsync (IoSockets async (input.input, executor), IoSockets async (output.output, executor))
+          intercept[ExecutionException](result.get).getCause shouldBe an[IOException]
+        }
+      }
+    }
+  }
+}
+
+private object IoSocketsTest {
+
+  type Pair = java.util.Map.Entry[InputSocket[_ <: Entry], OutputSocket[_ <: Entry]]
+
+  def withExecutor(fun: ExecutorService => Unit) {
+    val executor = Executors newFixedThreadPool 4
+    try {
+      fun(executor)
+    } finally {
+      executor shutdown ()
+    }
+  }
+
+  def pair(input: InputSocket[_ <: Entry], output: OutputSocket[_ <: Entry]): Pair =
+    new SimpleImmutableEntry(input, output)
+
+  def pairs(seq: Seq[(IoBuffer, IoBuffer)]): java.lang.Iterable[Pair] =
+    seq.map { case (input, output) => pair(input.input, output.output) }.asJava
+}
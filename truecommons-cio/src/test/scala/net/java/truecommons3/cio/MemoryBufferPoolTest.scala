@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio
+
+import java.io._
+
+import net.java.truecommons3.cio.Entry._
+import org.junit.runner._
+import org.scalatest.Matchers._
+import org.scalatest._
+import org.scalatest.junit._
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class MemoryBufferPoolTest extends WordSpec {
+
+  import IoBufferTestUtils._
+
+  "A memory buffer pool" when {
+    "constructed without a memory budget" should {
+      "not reserve any memory" in {
+        val pool = new MemoryBufferPool(16)
+        val buffer = pool.allocate
+        val data = random(100000)
+        write(buffer, data)
+        read(buffer) should equal (data)
+        buffer release ()
+        pool.getReservedMemory should be (0)
+      }
+    }
+
+    "constructed with a memory budget" should {
+      "recycle the direct memory of released buffers" in {
+        val pool = new MemoryBufferPool(16, 1024 * 1024)
+        val data = random(100000)
+        val b1 = pool.allocate
+        write(b1, data)
+        read(b1) should equal (data)
+        pool.size should be (1)
+        val reserved = pool.getReservedMemory
+        reserved should be > 0L
+        b1 release ()
+        pool.size should be (0)
+        val b2 = pool.allocate
+        write(b2, data)
+        read(b2) should equal (data)
+        pool.getReservedMemory should be (reserved)
+        b2 release ()
+      }
+
+      "not exceed the memory budget" in {
+        val budget = 64 * 1024
+        val pool = new MemoryBufferPool(16, budget)
+        val buffers = for (_ <- 1 to 4) yield {
+          val buffer = pool.allocate
+          val data = random(50000)
+          write(buffer, data)
+          read(buffer) should equal (data)
+          buffer
+        }
+        pool.getReservedMemory should be <= budget.toLong
+        buffers foreach (_ release ())
+      }
+
+      "not recycle the direct memory of a released buffer while reading it" in {
+        val pool = new MemoryBufferPool(16, 1024 * 1024)
+        val d1 = random(10000)
+        val b1 = pool.allocate
+        write(b1, d1)
+        val in = b1.input stream null
+        try {
+          b1 release ()
+          val b2 = pool.allocate
+          write(b2, random(10000))
+          val a1 = new Array[Byte](d1.length)
+          new DataInputStream(in) readFully a1
+          a1 should equal (d1)
+          b2 release ()
+        } finally {
+          in close ()
+        }
+      }
+    }
+
+    "exposing the contents of a memory buffer" should {
+      "neither recycle nor return its direct memory to the budget while it's in use" in {
+        val pool = new MemoryBufferPool(128 * 1024, 1024 * 1024)
+        val data = random(100000)
+        val b1 = pool.allocate.asInstanceOf[MemoryBuffer]
+        write(b1, data)
+        val buffer = b1.getBuffer
+        buffer.isDirect should be (true)
+        val reserved = pool.getReservedMemory
+        b1 release ()
+        pool.getReservedMemory should be (reserved)
+        val b2 = pool.allocate
+        write(b2, random(100000))
+        val array = new Array[Byte](buffer.remaining)
+        buffer get array
+        array should equal (data)
+        b2 release ()
+      }
+    }
+
+    "constructed with a segment size" should {
+      "write and read segmented memory buffers" in {
+        val pool = new MemoryBufferPool(16, 1024 * 1024, 4096)
+        val data = random(100000)
+        val b1 = pool.allocate
+        write(b1, data)
+        read(b1) should equal (data)
+        val reserved = pool.getReservedMemory
+        reserved should be >= 100000L
+        reserved should be < 2 * 100000L
+        b1 release ()
+        val b2 = pool.allocate.asInstanceOf[MemoryBuffer]
+        write(b2, data)
+        pool.getReservedMemory should be (reserved)
+        val buffer = b2.getBuffer
+        val array = new Array[Byte](buffer.remaining)
+        buffer get array
+        array should equal (data)
+        read(b2) should equal (data)
+        b2 release ()
+      }
+    }
+
+    "given a negative memory budget" should {
+      "fail with an IllegalArgumentException" in {
+        intercept[IllegalArgumentException](new MemoryBufferPool(16, -1))
+      }
+    }
+  }
+}
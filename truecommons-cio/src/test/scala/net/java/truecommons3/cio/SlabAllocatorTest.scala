@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.cio
+
+import org.junit.runner._
+import org.scalatest.Matchers._
+import org.scalatest._
+import org.scalatest.junit._
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class SlabAllocatorTest extends WordSpec {
+
+  def discard(slabs: SlabAllocator, capacity: Int) {
+    slabs discard (slabs allocate capacity)
+  }
+
+  "A slab allocator" when {
+    "its budget is exhausted" should {
+      "allocate heap byte buffers of exactly the required capacity" in {
+        val slabs = new SlabAllocator(0)
+        val buffer = slabs allocate 5000
+        buffer.isDirect should be (false)
+        buffer.capacity should be (5000)
+        slabs recycle buffer
+        slabs.getFree should be (0)
+      }
+    }
+
+    "recycling slabs" should {
+      "return them to the budget beyond half of it" in {
+        val size = 64 * 1024
+        val slabs = new SlabAllocator(4 * size)
+        val buffers = for (_ <- 1 to 4) yield slabs allocate size
+        buffers foreach (_.isDirect should be (true))
+        slabs.getReserved should be (4 * size)
+        buffers foreach (slabs recycle _)
+        slabs.getFree should be (2 * size)
+        slabs.getReserved should be (2 * size)
+        val buffer = slabs allocate size
+        slabs.getFree should be (size)
+        slabs.getReserved should be (2 * size)
+        buffers exists (_ eq buffer) should be (true)
+      }
+
+      "neither recycle discarded slabs nor return them to the budget before they get collected" in {
+        val slabs = new SlabAllocator(1024 * 1024)
+        discard(slabs, 4096)
+        slabs.getReserved should be (4096)
+        slabs.getFree should be (0)
+        for (_ <- 1 to 100; if 0 != slabs.getReserved) {
+          System gc ()
+          Thread sleep 10
+        }
+        slabs.getReserved should be (0)
+      }
+    }
+  }
+}
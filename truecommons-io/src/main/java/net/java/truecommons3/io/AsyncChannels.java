@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadPendingException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.channels.WritePendingException;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Provides adapters from blocking and file channels to
+ * {@linkplain AsynchronousByteChannel asynchronous byte channels}.
+ * <p>
+ * With these adapters, a thread is only required while an individual read or
+ * write operation is in progress rather than for the entire lifetime of the
+ * channel.
+ * As usual for asynchronous byte channels, at most one read and one write
+ * operation may be outstanding at any time.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class AsyncChannels {
+
+    private AsyncChannels() { }
+
+    /**
+     * Adapts the given blocking channel to an asynchronous byte channel.
+     * Each read or write operation gets run by the given executor.
+     * If the executor rejects an operation, then it gets run by the current
+     * thread.
+     * Closing the returned channel will close the given channel.
+     *
+     * @param  channel the blocking channel to adapt.
+     *         If this is not a {@link ReadableByteChannel}, then reading the
+     *         returned channel fails with a
+     *         {@link NonReadableChannelException}.
+     *         If this is not a {@link WritableByteChannel}, then writing the
+     *         returned channel fails with a
+     *         {@link NonWritableChannelException}.
+     * @param  executor the executor for running the read and write
+     *         operations.
+     * @return An asynchronous byte channel which reads or writes the given
+     *         channel.
+     */
+    public static AsynchronousByteChannel newChannel(
+            Channel channel,
+            Executor executor) {
+        return new ExecutorChannel(channel, executor);
+    }
+
+    /**
+     * Adapts the given file channel to an asynchronous byte channel with its
+     * own virtual file pointer.
+     * Each read or write operation starts at the virtual file pointer and
+     * advances it by the number of bytes read or written upon completion,
+     * so clients should not read and write the returned channel concurrently.
+     * Closing the returned channel will close the given channel.
+     *
+     * @param  channel the file channel to adapt.
+     * @param  position the initial position of the virtual file pointer.
+     * @return An asynchronous byte channel which reads or writes the given
+     *         file channel.
+     */
+    public static AsynchronousByteChannel newChannel(
+            AsynchronousFileChannel channel,
+            long position) {
+        return new FileAdapter(channel, position);
+    }
+
+    /**
+     * Implements the future variants of the read and write operations and
+     * enforces that at most one read and one write operation is pending.
+     */
+    private abstract static class AbstractChannel
+    implements AsynchronousByteChannel {
+
+        private final AtomicBoolean reading = new AtomicBoolean();
+        private final AtomicBoolean writing = new AtomicBoolean();
+
+        @Override
+        public final <A> void read(
+                final ByteBuffer dst,
+                final A attachment,
+                final CompletionHandler<Integer, ? super A> handler) {
+            if (dst.isReadOnly())
+                throw new IllegalArgumentException("Read-only buffer!");
+            if (!reading.compareAndSet(false, true))
+                throw new ReadPendingException();
+            try {
+                read(dst, new Pending<>(reading, attachment, handler));
+            } catch (final RuntimeException ex) {
+                reading.set(false);
+                throw ex;
+            }
+        }
+
+        @Override
+        public final Future<Integer> read(ByteBuffer dst) {
+            final CompletionFuture<Integer> result = new CompletionFuture<>();
+            read(dst, null, result);
+            return result;
+        }
+
+        @Override
+        public final <A> void write(
+                final ByteBuffer src,
+                final A attachment,
+                final CompletionHandler<Integer, ? super A> handler) {
+            if (!writing.compareAndSet(false, true))
+                throw new WritePendingException();
+            try {
+                write(src, new Pending<>(writing, attachment, handler));
+            } catch (final RuntimeException ex) {
+                writing.set(false);
+                throw ex;
+            }
+        }
+
+        @Override
+        public final Future<Integer> write(ByteBuffer src) {
+            final CompletionFuture<Integer> result = new CompletionFuture<>();
+            write(src, null, result);
+            return result;
+        }
+
+        /**
+         * Starts reading into the given buffer and calls the given handler
+         * upon completion.
+         */
+        abstract void read(ByteBuffer dst, CompletionHandler<Integer, Void> handler);
+
+        /**
+         * Starts writing from the given buffer and calls the given handler
+         * upon completion.
+         */
+        abstract void write(ByteBuffer src, CompletionHandler<Integer, Void> handler);
+    } // AbstractChannel
+
+    private static final class ExecutorChannel extends AbstractChannel {
+
+        final Channel channel;
+        final Executor executor;
+
+        ExecutorChannel(final Channel channel, final Executor executor) {
+            this.channel = Objects.requireNonNull(channel);
+            this.executor = Objects.requireNonNull(executor);
+        }
+
+        @Override
+        void read(
+                final ByteBuffer dst,
+                final CompletionHandler<Integer, Void> handler) {
+            if (!(channel instanceof ReadableByteChannel))
+                throw new NonReadableChannelException();
+            final ReadableByteChannel channel = (ReadableByteChannel) this.channel;
+            execute(new Operation(handler) {
+                @Override
+                int call() throws IOException {
+                    return channel.read(dst);
+                }
+            });
+        }
+
+        @Override
+        void write(
+                final ByteBuffer src,
+                final CompletionHandler<Integer, Void> handler) {
+            if (!(channel instanceof WritableByteChannel))
+                throw new NonWritableChannelException();
+            final WritableByteChannel channel = (WritableByteChannel) this.channel;
+            execute(new Operation(handler) {
+                @Override
+                int call() throws IOException {
+                    return channel.write(src);
+                }
+            });
+        }
+
+        private void execute(final Runnable operation) {
+            try {
+                executor.execute(operation);
+            } catch (final RejectedExecutionException ex) {
+                operation.run();
+            }
+        }
+
+        @Override
+        public boolean isOpen() { return channel.isOpen(); }
+
+        @Override
+        public void close() throws IOException { channel.close(); }
+    } // ExecutorChannel
+
+    /** A blocking read or write operation for an executor. */
+    private abstract static class Operation implements Runnable {
+
+        final CompletionHandler<Integer, Void> handler;
+
+        Operation(final CompletionHandler<Integer, Void> handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public final void run() {
+            final int n;
+            try {
+                n = call();
+            } catch (final Throwable ex) {
+                // Any throwable must fail the operation, or else the pending
+                // flag would never get cleared.
+                handler.failed(ex, null);
+                return;
+            }
+            handler.completed(n, null);
+        }
+
+        /** Runs the blocking operation and returns its result. */
+        abstract int call() throws IOException;
+    } // Operation
+
+    private static final class FileAdapter extends AbstractChannel {
+
+        final AsynchronousFileChannel channel;
+        volatile long position;
+
+        FileAdapter(final AsynchronousFileChannel channel, final long position) {
+            if (0 > position)
+                throw new IllegalArgumentException("Negative position: " + position);
+            this.channel = Objects.requireNonNull(channel);
+            this.position = position;
+        }
+
+        @Override
+        void read(ByteBuffer dst, CompletionHandler<Integer, Void> handler) {
+            channel.read(dst, position, null, new Advance(handler));
+        }
+
+        @Override
+        void write(ByteBuffer src, CompletionHandler<Integer, Void> handler) {
+            channel.write(src, position, null, new Advance(handler));
+        }
+
+        /**
+         * Advances the virtual file pointer upon completion of an operation.
+         */
+        private final class Advance implements CompletionHandler<Integer, Void> {
+
+            final CompletionHandler<Integer, Void> handler;
+
+            Advance(final CompletionHandler<Integer, Void> handler) {
+                this.handler = handler;
+            }
+
+            @Override
+            public void completed(final Integer n, final Void attachment) {
+                if (0 < n)
+                    position += n;
+                handler.completed(n, null);
+            }
+
+            @Override
+            public void failed(final Throwable ex, final Void attachment) {
+                handler.failed(ex, null);
+            }
+        } // Advance
+
+        @Override
+        public boolean isOpen() { return channel.isOpen(); }
+
+        @Override
+        public void close() throws IOException { channel.close(); }
+    } // FileAdapter
+
+    /**
+     * Clears the pending flag of an operation before forwarding its outcome
+     * to the client's handler, so the handler can start the next operation.
+     */
+    private static final class Pending<A>
+    implements CompletionHandler<Integer, Void> {
+
+        final AtomicBoolean flag;
+        final A attachment;
+        final CompletionHandler<Integer, ? super A> handler;
+
+        Pending(
+                final AtomicBoolean flag,
+                final A attachment,
+                final CompletionHandler<Integer, ? super A> handler) {
+            this.flag = flag;
+            this.attachment = attachment;
+            this.handler = Objects.requireNonNull(handler);
+        }
+
+        @Override
+        public void completed(final Integer n, final Void unused) {
+            flag.set(false);
+            handler.completed(n, attachment);
+        }
+
+        @Override
+        public void failed(final Throwable ex, final Void unused) {
+            flag.set(false);
+            handler.failed(ex, attachment);
+        }
+    } // Pending
+}
@@ -7,6 +7,14 @@ package net.java.truecommons3.io;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import static java.lang.Math.min;
 
@@ -14,6 +22,30 @@ import static java.lang.Math.min;
  * Provides buffered random read-only access to its decorated seekable byte
  * channel.
  * Note that this channel maintains its own virtual file pointer.
+ * <p>
+ * The channel data gets cached in a configurable number of pages.
+ * Each page holds the data of a region of the decorated channel which starts
+ * at a multiple of the buffer size.
+ * If all pages are in use, then a page gets evicted using the CLOCK
+ * algorithm, which approximates least-recently-used eviction.
+ * Using more than one page avoids reloading the data when the access pattern
+ * alternates between some regions of the decorated channel, e.g. between the
+ * central directory and the entry data of an archive file.
+ * <p>
+ * The size of the decorated channel gets cached, too.
+ * If the decorated channel gets concurrently changed, then {@link #sync()}
+ * needs to get called in order to reload its size and data.
+ * <p>
+ * Optionally, this channel can read ahead:
+ * When it detects sequential access, i.e. when reading a page which
+ * immediately follows the previously read page, it prefetches the next pages
+ * on a background executor.
+ * This way, the I/O for the next pages overlaps with the processing of the
+ * current page by the client, e.g. decompressing it.
+ * While prefetching, all accesses to the decorated channel get serialized,
+ * so the decorated channel does not need to be thread-safe.
+ * However, the client must not access the decorated channel until this
+ * channel has been closed.
  *
  * @author Christian Schlichtherle
  */
@@ -25,13 +57,57 @@ public class BufferedReadOnlyChannel extends ReadOnlyChannel {
     private long pos;
 
     /**
-     * The position in the decorated channel where the buffer starts.
-     * This is always a multiple of the buffer size.
+     * The positions in the decorated channel where the pages start.
+     * These are always a multiple of the buffer size.
      */
-    private long bufferStart = INVALID;
+    private final long[] starts;
 
-    /** The buffer for the channel data. */
-    private final byte[] buffer;
+    /** The size of each page. */
+    private final int bufferSize;
+
+    /**
+     * The pages for the channel data.
+     * Each page is a heap byte buffer which gets reused for any page fill.
+     */
+    private final ByteBuffer[] pages;
+
+    /** The cached size of the decorated channel or {@link #INVALID}. */
+    private long size = INVALID;
+
+    /** The reference bits of the pages for the CLOCK algorithm. */
+    private final boolean[] referenced;
+
+    /** The index of the next page to consider for eviction. */
+    private int hand;
+
+    /** The index of the page which has been accessed most recently. */
+    private int page;
+
+    /**
+     * The position of the decorated channel after the last page fill or
+     * {@link #INVALID} if unknown.
+     */
+    private long next = INVALID;
+
+    private long hits, misses;
+
+    /** The start of the page which has been accessed most recently. */
+    private long last = INVALID;
+
+    /** The maximum number of pages to prefetch. */
+    private final int readAhead;
+
+    /** The nullable executor for prefetching pages. */
+    private final Executor executor;
+
+    /** The pending or completed prefetches in order of their start. */
+    private final ArrayDeque<Prefetch> prefetches = new ArrayDeque<>();
+
+    /** The spare pages to use for prefetching. */
+    private final ArrayDeque<ByteBuffer> spares = new ArrayDeque<>();
+
+    /** Guards all access to the decorated channel while prefetching. */
+    private final Object lock = new Object();
 
     /**
      * Constructs a new buffered read-only channel.
@@ -50,11 +126,83 @@ public class BufferedReadOnlyChannel extends ReadOnlyChannel {
      * @param channel the channel to decorate.
      * @param bufferSize the size of the byte buffer.
      */
+    public BufferedReadOnlyChannel(
+            SeekableByteChannel channel,
+            int bufferSize) {
+        this(channel, bufferSize, 1);
+    }
+
+    /**
+     * Constructs a new buffered read-only channel.
+     * Closing this channel will close the given seekable byte channel.
+     *
+     * @param channel the channel to decorate.
+     * @param bufferSize the size of each page.
+     * @param pageCount the number of pages to cache.
+     */
+    public BufferedReadOnlyChannel(
+            SeekableByteChannel channel,
+            int bufferSize,
+            int pageCount) {
+        this(channel, bufferSize, pageCount, 0, null);
+    }
+
+    /**
+     * Constructs a new buffered read-only channel which reads ahead on
+     * sequential access using the same executor as
+     * {@link Streams#copy(Source, Sink)}.
+     * Closing this channel will close the given seekable byte channel.
+     *
+     * @param channel the channel to decorate.
+     * @param bufferSize the size of each page.
+     * @param pageCount the number of pages to cache.
+     * @param readAhead the maximum number of pages to prefetch.
+     */
+    public BufferedReadOnlyChannel(
+            SeekableByteChannel channel,
+            int bufferSize,
+            int pageCount,
+            int readAhead) {
+        this(channel, bufferSize, pageCount, readAhead, Streams.executor);
+    }
+
+    /**
+     * Constructs a new buffered read-only channel.
+     * Closing this channel will close the given seekable byte channel.
+     *
+     * @param channel the channel to decorate.
+     * @param bufferSize the size of each page.
+     * @param pageCount the number of pages to cache.
+     * @param readAhead the maximum number of pages to prefetch.
+     *        If this is zero, then this channel does not read ahead.
+     * @param executor the executor for prefetching pages.
+     *        This may be {@code null} if and only if {@code readAhead} is
+     *        zero.
+     */
     public BufferedReadOnlyChannel(
             final SeekableByteChannel channel,
-            final int bufferSize) {
+            final int bufferSize,
+            final int pageCount,
+            final int readAhead,
+            final Executor executor) {
         super(channel);
-        buffer = new byte[bufferSize];
+        if (0 >= bufferSize)
+            throw new IllegalArgumentException("Buffer size not positive: " + bufferSize);
+        if (0 >= pageCount)
+            throw new IllegalArgumentException("Page count not positive: " + pageCount);
+        if (0 > readAhead)
+            throw new IllegalArgumentException("Negative read ahead: " + readAhead);
+        if (0 < readAhead && null == executor)
+            throw new NullPointerException();
+        this.readAhead = readAhead;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        starts = new long[pageCount];
+        Arrays.fill(starts, INVALID);
+        pages = new ByteBuffer[pageCount];
+        for (int i = 0; i < pageCount; i++)
+            pages[i] = ByteBuffer.allocate(bufferSize);
+        referenced = new boolean[pageCount];
     }
 
     @Override
@@ -69,16 +217,16 @@ public class BufferedReadOnlyChannel extends ReadOnlyChannel {
         if (position() >= size) // ensure pos is initialized, but do NOT cache!
             return -1;
 
-        // Read of buffer data.
+        // Read of page data.
         int total = 0; // amount of data copied dst
-        final int bufferSize = buffer.length;
+        final int bufferSize = this.bufferSize;
         while (total < remaining && pos < size) {
-            positionBuffer();
-            final int bufferPos = (int) (pos - bufferStart);
+            final int page = positionBuffer(size);
+            final int bufferPos = (int) (pos - starts[page]);
             int bufferLimit = min(remaining - total, bufferSize - bufferPos);
             bufferLimit = (int) min(bufferLimit, size - pos);
             assert bufferLimit > 0;
-            dst.put(buffer, bufferPos, bufferLimit);
+            dst.put(pages[page].array(), bufferPos, bufferLimit);
             total += bufferLimit;
             pos += bufferLimit;
         }
@@ -101,59 +249,306 @@ public class BufferedReadOnlyChannel extends ReadOnlyChannel {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The size of the decorated channel gets cached until the next call to
+     * {@link #sync()}.
+     */
+    @Override
+    public long size() throws IOException {
+        checkOpen();
+        long size = this.size;
+        if (INVALID == size) {
+            synchronized (lock) {
+                size = channel.size();
+            }
+            this.size = size;
+        }
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        discard();
+        channel.close();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This channel is not transparent while reading ahead because the
+     * prefetches access the decorated channel in the background.
+     */
+    @Override
+    protected boolean isTransparent() { return 0 == readAhead; }
+
     /**
      * Notifies this channel of concurrent changes in its decorated channel.
-     * Calling this method triggers a reload of the buffer on the next read
-     * access.
+     * Calling this method triggers a reload of the size and the pages on the
+     * next read access.
      *
      * @return {@code this}
      */
     public BufferedReadOnlyChannel sync() {
-        bufferStart = INVALID;
+        discard();
+        Arrays.fill(starts, INVALID);
+        Arrays.fill(referenced, false);
+        last = INVALID;
+        size = INVALID;
+        synchronized (lock) {
+            next = INVALID;
+        }
         return this;
     }
 
     /**
-     * Positions the buffer so that it holds the data
+     * Returns the number of page accesses which have been served from the
+     * cached or prefetched pages.
+     *
+     * @return The number of page accesses which have been served from the
+     *         cached or prefetched pages.
+     */
+    public long getHits() { return hits; }
+
+    /**
+     * Returns the number of page accesses which required to load the page
+     * from the decorated channel.
+     *
+     * @return The number of page accesses which required to load the page
+     *         from the decorated channel.
+     */
+    public long getMisses() { return misses; }
+
+    /**
+     * Positions a page so that it holds the data
      * referenced by the virtual file pointer.
      *
+     * @param  size the size of the decorated channel.
+     * @return The index of the page.
      * @throws IOException on any I/O error.
-     *         The buffer gets invalidated in this case.
+     *         The page gets invalidated in this case.
      */
-    private void positionBuffer() throws IOException {
-        final int bufferSize = buffer.length;
-
-        // Check position.
+    private int positionBuffer(final long size) throws IOException {
+        final int bufferSize = this.bufferSize;
         final long pos = this.pos;
-        long bufferStart = this.bufferStart;
-        final long nextBufferStart = bufferStart + bufferSize;
-        if (bufferStart <= pos && pos < nextBufferStart)
-            return;
-
-        try {
-            final SeekableByteChannel channel = this.channel;
-
-            // Move position.
-            // Round down to multiple of buffer size.
-            this.bufferStart = bufferStart = pos / bufferSize * bufferSize;
-            if (bufferStart != nextBufferStart)
-                channel.position(bufferStart);
-
-            // Fill buffer until end of file or buffer.
-            // This should normally complete in one loop cycle, but we do not
-            // depend on this as it would be a violation of ReadOnlyFile's
-            // contract.
-            int total = 0;
-            final ByteBuffer buffer = ByteBuffer.wrap(this.buffer);
-            do {
-                int read = channel.read(buffer);
-                if (read < 0)
-                    break;
-                total += read;
-            } while (total < bufferSize);
-        } catch (final Throwable ex) {
-            this.bufferStart = INVALID;
-            throw ex;
+        final long[] starts = this.starts;
+
+        // Check the most recently accessed page first.
+        int page = this.page;
+        if (starts[page] <= pos && pos < starts[page] + bufferSize) {
+            hits++;
+            referenced[page] = true;
+            return page;
+        }
+
+        // Round down to multiple of buffer size.
+        final long start = pos / bufferSize * bufferSize;
+        final boolean sequential = INVALID != last && last + bufferSize == start;
+        last = start;
+        page = lookup(start);
+        if (0 <= page) {
+            hits++;
+        } else {
+            page = evict();
+            if (take(page, start)) {
+                hits++;
+            } else {
+                misses++;
+                if (!sequential)
+                    discard();
+                fill(page, start);
+            }
+        }
+        referenced[page] = true;
+        if (sequential)
+            prefetch(start, size);
+        return this.page = page;
+    }
+
+    /**
+     * Returns the index of the page which starts at the given position or
+     * -1 if no such page exists.
+     */
+    private int lookup(final long start) {
+        final long[] starts = this.starts;
+        for (int page = starts.length; 0 <= --page; )
+            if (starts[page] == start)
+                return page;
+        return -1;
+    }
+
+    /** Selects the page to evict using the CLOCK algorithm. */
+    private int evict() {
+        final boolean[] referenced = this.referenced;
+        final int count = referenced.length;
+        int hand = this.hand;
+        while (referenced[hand]) {
+            referenced[hand] = false;
+            hand = (hand + 1) % count;
         }
+        this.hand = (hand + 1) % count;
+        return hand;
     }
+
+    /**
+     * Fills the given page with the data starting at the given position in
+     * the decorated channel.
+     */
+    private void fill(final int page, final long start) throws IOException {
+        starts[page] = INVALID;
+        read(pages[page], start);
+        starts[page] = start;
+    }
+
+    /**
+     * Fills the given page with the data starting at the given position in
+     * the decorated channel.
+     * This method may get called by a background thread.
+     */
+    private void read(final ByteBuffer buffer, final long start)
+    throws IOException {
+        synchronized (lock) {
+            try {
+                final SeekableByteChannel channel = this.channel;
+
+                // Move position.
+                if (start != next)
+                    channel.position(start);
+                next = INVALID;
+
+                // Fill page until end of file or page.
+                // This should normally complete in one loop cycle, but we do
+                // not depend on this as it would be a violation of
+                // ReadOnlyFile's contract.
+                final int bufferSize = this.bufferSize;
+                int total = 0;
+                buffer.clear();
+                do {
+                    int read = channel.read(buffer);
+                    if (read < 0)
+                        break;
+                    total += read;
+                } while (total < bufferSize);
+                next = start + total;
+            } catch (final Throwable ex) {
+                next = INVALID;
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Schedules the prefetches of the pages following the page which starts
+     * at the given position, unless they are cached or prefetched already.
+     */
+    private void prefetch(final long start, final long size) {
+        final int bufferSize = this.bufferSize;
+        final long last = prefetches.isEmpty()
+                ? start
+                : prefetches.peekLast().start;
+        for (long next = Math.max(start, last) + bufferSize;
+                next < size
+                    && next <= start + (long) readAhead * bufferSize;
+                next += bufferSize) {
+            if (0 <= lookup(next))
+                continue;
+            ByteBuffer buffer = spares.poll();
+            if (null == buffer) {
+                if (prefetches.size() >= readAhead)
+                    return;
+                buffer = ByteBuffer.allocate(bufferSize);
+            }
+            final Prefetch prefetch = new Prefetch(next, buffer);
+            try {
+                executor.execute(prefetch.task);
+            } catch (final RejectedExecutionException saturated) {
+                spares.add(buffer);
+                return;
+            }
+            prefetches.add(prefetch);
+        }
+    }
+
+    /**
+     * Moves the prefetched page which starts at the given position into the
+     * given page.
+     *
+     * @return Whether or not the page has been prefetched successfully.
+     */
+    private boolean take(final int page, final long start) {
+        for (final Iterator<Prefetch> i = prefetches.iterator(); i.hasNext(); ) {
+            final Prefetch prefetch = i.next();
+            if (prefetch.start != start)
+                continue;
+            i.remove();
+            final boolean success = prefetch.await();
+            if (success) {
+                spares.add(pages[page]);
+                pages[page] = prefetch.buffer;
+                starts[page] = start;
+            } else {
+                spares.add(prefetch.buffer);
+            }
+            return success;
+        }
+        return false;
+    }
+
+    /** Discards all prefetches and waits until they are done. */
+    private void discard() {
+        for (Prefetch prefetch; null != (prefetch = prefetches.poll()); ) {
+            prefetch.discarded = true;
+            prefetch.await();
+            spares.add(prefetch.buffer);
+        }
+    }
+
+    /** Reads a page ahead in the background. */
+    private final class Prefetch implements Callable<Void> {
+
+        final long start;
+        final ByteBuffer buffer;
+        final FutureTask<Void> task = new FutureTask<>(this);
+        volatile boolean discarded;
+
+        Prefetch(final long start, final ByteBuffer buffer) {
+            this.start = start;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            if (!discarded)
+                read(buffer, start);
+            return null;
+        }
+
+        /**
+         * Waits until this prefetch is done.
+         * If the executor has not yet started this prefetch, then it gets
+         * run by the current thread.
+         *
+         * @return Whether or not this prefetch has completed successfully.
+         */
+        boolean await() {
+            task.run(); // no-op if already running or done
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        task.get();
+                        return !discarded;
+                    } catch (InterruptedException interrupt) {
+                        interrupted = true;
+                    } catch (ExecutionException ex) {
+                        return false;
+                    }
+                }
+            } finally {
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+            }
+        }
+    } // Prefetch
 }
@@ -32,10 +32,14 @@ import java.nio.channels.NonWritableChannelException;
  * large enough to host any data to write.
  * Furthermore, when closing this channel, clients should call
  * {@link #getBuffer()} to obtain a duplicate of the current backing buffer.
+ * <p>
+ * Subclasses may override {@link #allocate(int, boolean)} and
+ * {@link #recycle(ByteBuffer)} in order to take the new backing buffers from
+ * a pool and return the old backing buffers to it.
  *
  * @author Christian Schlichtherle
  */
-public final class ByteBufferChannel extends AbstractSeekableChannel {
+public class ByteBufferChannel extends AbstractSeekableChannel {
 
     /** The backing buffer with the contents to share. */
     private ByteBuffer buffer;
@@ -141,11 +145,11 @@ public final class ByteBufferChannel extends AbstractSeekableChannel {
                 if (0 > newCapacity)
                     newCapacity = Integer.MAX_VALUE;
                 assert newPosition <= newCapacity;
-                this.buffer = buffer = (ByteBuffer) (buffer.isDirect()
-                        ? ByteBuffer.allocateDirect(newCapacity)
-                        : ByteBuffer.allocate(newCapacity))
+                final ByteBuffer oldBuffer = buffer;
+                this.buffer = buffer = (ByteBuffer) allocate(newCapacity, buffer.isDirect())
                         .put((ByteBuffer) buffer.position(0).limit(oldPosition))
                         .limit(newPosition);
+                recycle(oldBuffer);
             }
         } else {
             buffer.position(oldPosition);
@@ -161,6 +165,32 @@ public final class ByteBufferChannel extends AbstractSeekableChannel {
         return remaining;
     }
 
+    /**
+     * Allocates a new backing buffer when writing past the capacity of the
+     * current backing buffer.
+     * The implementation in the class {@link ByteBufferChannel} allocates a
+     * new byte buffer with exactly the given capacity.
+     *
+     * @param  capacity the minimum capacity of the new backing buffer.
+     * @param  direct whether or not the current backing buffer is direct.
+     * @return A new backing buffer with a capacity of at least
+     *         {@code capacity} bytes and a position of zero.
+     */
+    protected ByteBuffer allocate(int capacity, boolean direct) {
+        return direct
+                ? ByteBuffer.allocateDirect(capacity)
+                : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Recycles a backing buffer after its contents have been copied to a new
+     * backing buffer.
+     * The implementation in the class {@link ByteBufferChannel} does nothing.
+     *
+     * @param buffer the old backing buffer.
+     */
+    protected void recycle(ByteBuffer buffer) { }
+
     @Override
     public long position() throws IOException {
         checkOpen();
@@ -6,14 +6,20 @@ package net.java.truecommons3.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
  * Adapts a {@link SeekableByteChannel} to an input stream.
  * This stream supports marking unless the adapted channel fails to set its
  * position in {@link #markSupported}.
+ * <p>
+ * {@link #transferTo(OutputStream)} copies the data from channel to channel
+ * if the output stream is a {@link ChannelOutputStream}, so file channels
+ * can use {@link java.nio.channels.FileChannel#transferTo}.
  *
  * @see    ChannelOutputStream
  * @author Christian Schlichtherle
@@ -49,12 +55,107 @@ public class ChannelInputStream extends InputStream {
 
     @Override
     public final int read(byte[] b) throws IOException {
-        return read(ByteBuffer.wrap(b));
+        return read(b, 0, b.length);
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        return read(ByteBuffer.wrap(b, off, len));
+        return read(wrap(b, off, len));
+    }
+
+    /**
+     * Reads the given number of bytes into the given array unless the end of
+     * the channel is reached before.
+     *
+     * @param  b the array into which the data is read.
+     * @param  off the start offset in the array.
+     * @param  len the maximum number of bytes to read.
+     * @return The number of bytes read.
+     * @throws IOException on any I/O error.
+     */
+    public int readNBytes(final byte[] b, final int off, final int len)
+    throws IOException {
+        final ByteBuffer bb = wrap(b, off, len);
+        int total = 0;
+        while (bb.hasRemaining()) {
+            final int read = read(bb);
+            if (0 > read)
+                break;
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Reads up to the given number of bytes into a new array.
+     * The remaining bytes in the channel are used as a hint for the initial
+     * size of the array, so usually no data needs to get copied into a
+     * growing buffer.
+     * However, this method reads until the given number of bytes or the end
+     * of the channel is reached, so a channel which grows or shrinks
+     * concurrently is fine.
+     *
+     * @param  len the maximum number of bytes to read.
+     * @return An array with the bytes read.
+     * @throws IOException on any I/O error.
+     */
+    public byte[] readNBytes(final int len) throws IOException {
+        if (0 > len)
+            throw new IllegalArgumentException("Negative length: " + len);
+        final long avl = channel.size() - channel.position();
+        byte[] b = new byte[(int) Math.max(0, Math.min(len, avl))];
+        int total = 0;
+        while (total < len) {
+            if (total == b.length) {
+                // The hint was too small, so check for the end of the
+                // channel before growing the array.
+                final int read = read();
+                if (0 > read)
+                    break;
+                b = Arrays.copyOf(b, (int) Math.min(len,
+                        Math.max(Streams.BUFFER_SIZE, 2L * b.length)));
+                b[total++] = (byte) read;
+            } else {
+                final int read = readNBytes(b, total, b.length - total);
+                total += read;
+                if (total < b.length)
+                    break; // end of channel
+            }
+        }
+        return total == b.length ? b : Arrays.copyOf(b, total);
+    }
+
+    /**
+     * Reads all remaining bytes from this stream and writes them to the given
+     * output stream.
+     * If the output stream is a {@link ChannelOutputStream}, then the data
+     * gets transferred from channel to channel using
+     * {@link Streams#transfer(Source, Sink)}.
+     *
+     * @param  out the output stream to write to.
+     * @return The number of bytes transferred.
+     * @throws IOException on any I/O error.
+     */
+    public long transferTo(final OutputStream out) throws IOException {
+        Objects.requireNonNull(out);
+        if (out instanceof ChannelOutputStream) {
+            final long position = channel.position();
+            Streams.transfer(channel, ((ChannelOutputStream) out).channel,
+                    CopyOptions.DEFAULT);
+            return channel.position() - position;
+        }
+        final byte[] b = new byte[Streams.BUFFER_SIZE];
+        long total = 0;
+        for (int read; 0 <= (read = read(b)); total += read)
+            out.write(b, 0, read);
+        return total;
+    }
+
+    /** Returns a byte buffer which wraps the given region of the given array. */
+    private static ByteBuffer wrap(final byte[] b, final int off, final int len) {
+        if (0 > off || 0 > len || b.length - len < off)
+            throw new IndexOutOfBoundsException();
+        return ByteBuffer.wrap(b, off, len);
     }
 
     @SuppressWarnings("SleepWhileInLoop")
@@ -72,15 +173,19 @@ public class ChannelInputStream extends InputStream {
         return read;
     }
 
+    /**
+     * Skips the given number of bytes by moving the position of the channel
+     * without reading any data.
+     * The number of bytes skipped is limited by the end of the channel.
+     */
     @Override
     public long skip(long n) throws IOException {
         if (n <= 0)
             return 0;
         final long pos = channel.position(); // should fail when closed
-        final long size = channel.size();
-        final long rem = size - pos;
+        final long rem = channel.size() - pos;
         if (n > rem)
-            n = (int) rem;
+            n = Math.max(0, rem);
         channel.position(pos + n);
         return n;
     }
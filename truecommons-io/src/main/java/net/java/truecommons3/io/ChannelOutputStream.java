@@ -40,7 +40,7 @@ public class ChannelOutputStream extends OutputStream {
 
     @Override
     public final void write(byte[] b) throws IOException {
-        write(ByteBuffer.wrap(b));
+        write(b, 0, b.length);
     }
 
     @Override
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io;
+
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A future which gets completed by calling it as a completion handler.
+ * This is useful for implementing the {@link Future} variants of
+ * asynchronous operations by their {@link CompletionHandler} variants.
+ * The attachment gets ignored.
+ * This class is thread-safe.
+ *
+ * @param  <V> the type of the result.
+ * @author Christian Schlichtherle
+ */
+public final class CompletionFuture<V>
+extends FutureTask<V> implements CompletionHandler<V, Object> {
+
+    /** Constructs a new completion future. */
+    public CompletionFuture() {
+        super(new Callable<V>() {
+            @Override
+            public V call() { throw new AssertionError(); }
+        });
+    }
+
+    /**
+     * Does nothing because this future only gets completed by calling
+     * {@link #completed} or {@link #failed}.
+     */
+    @Override
+    public void run() { }
+
+    @Override
+    public void completed(V result, Object attachment) { set(result); }
+
+    @Override
+    public void failed(Throwable ex, Object attachment) { setException(ex); }
+}
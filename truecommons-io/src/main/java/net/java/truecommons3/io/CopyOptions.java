@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Immutable options for copying data with the methods of the class
+ * {@link Streams}.
+ * Use {@link #DEFAULT} as a starting point and call the {@code with*} methods
+ * to obtain modified copies, e.g.:
+ * <pre>{@code
+ * CopyOptions options = CopyOptions.DEFAULT
+ *         .withBufferSize(1024 * 1024)
+ *         .withAdaptive(true);
+ * Streams.copy(source, sink, options);
+ * }</pre>
+ * <p>
+ * This class is immutable.
+ *
+ * @see    Streams
+ * @author Christian Schlichtherle
+ */
+public final class CopyOptions {
+
+    /**
+     * The default copy options, using a FIFO of four buffers of
+     * {@link Streams#BUFFER_SIZE} bytes each without adaption, a shared
+     * executor for the reader tasks and a same thread threshold of
+     * {@link Streams#SAME_THREAD_THRESHOLD} bytes.
+     */
+    public static final CopyOptions DEFAULT = new CopyOptions(
+            Streams.FIFO_SIZE, Streams.BUFFER_SIZE, false, Streams.executor,
+            Streams.SAME_THREAD_THRESHOLD);
+
+    private final int fifoSize;
+    private final int bufferSize;
+    private final boolean adaptive;
+    private final ExecutorService executor;
+    private final long sameThreadThreshold;
+
+    private CopyOptions(
+            final int fifoSize,
+            final int bufferSize,
+            final boolean adaptive,
+            final ExecutorService executor,
+            final long sameThreadThreshold) {
+        if (2 > fifoSize)
+            throw new IllegalArgumentException("FIFO size less than two: " + fifoSize);
+        if (0 >= bufferSize)
+            throw new IllegalArgumentException("Buffer size not positive: " + bufferSize);
+        if (0 > sameThreadThreshold)
+            throw new IllegalArgumentException("Negative same thread threshold: " + sameThreadThreshold);
+        this.fifoSize = fifoSize;
+        this.bufferSize = bufferSize;
+        this.adaptive = adaptive;
+        this.executor = Objects.requireNonNull(executor);
+        this.sameThreadThreshold = sameThreadThreshold;
+    }
+
+    /**
+     * Returns the number of buffers in the FIFO used for exchanging data
+     * between the reader thread and the writer thread.
+     *
+     * @return The number of buffers in the FIFO.
+     */
+    public int getFifoSize() { return fifoSize; }
+
+    /**
+     * Returns a copy of these options with the given number of buffers in the
+     * FIFO.
+     * More buffers help to compensate for oscillating I/O bandwidths like
+     * e.g. with network shares.
+     *
+     * @param  fifoSize the number of buffers in the FIFO.
+     * @return A copy of these options with the given number of buffers in the
+     *         FIFO.
+     * @throws IllegalArgumentException if {@code fifoSize} is less than two.
+     */
+    public CopyOptions withFifoSize(int fifoSize) {
+        return new CopyOptions(fifoSize, bufferSize, adaptive, executor,
+                sameThreadThreshold);
+    }
+
+    /**
+     * Returns the size of each buffer in the FIFO.
+     * If these options are {@linkplain #isAdaptive() adaptive}, then this is
+     * the maximum size.
+     *
+     * @return The size of each buffer in the FIFO.
+     */
+    public int getBufferSize() { return bufferSize; }
+
+    /**
+     * Returns a copy of these options with the given size of each buffer in
+     * the FIFO.
+     *
+     * @param  bufferSize the size of each buffer in the FIFO.
+     * @return A copy of these options with the given size of each buffer in
+     *         the FIFO.
+     * @throws IllegalArgumentException if {@code bufferSize} is not positive.
+     */
+    public CopyOptions withBufferSize(int bufferSize) {
+        return new CopyOptions(fifoSize, bufferSize, adaptive, executor,
+                sameThreadThreshold);
+    }
+
+    /**
+     * Returns whether or not the size of the buffers adapts to the input.
+     * If this is {@code true}, then the buffers start with a size of
+     * {@link Streams#BUFFER_SIZE} bytes or the
+     * {@linkplain #getBufferSize() buffer size}, whatever is smaller.
+     * Whenever a read fills an entire buffer without slowing down the
+     * throughput, the buffer size gets doubled until it reaches the
+     * {@linkplain #getBufferSize() buffer size}.
+     *
+     * @return Whether or not the size of the buffers adapts to the input.
+     */
+    public boolean isAdaptive() { return adaptive; }
+
+    /**
+     * Returns a copy of these options with the given adaption mode.
+     *
+     * @param  adaptive whether or not the size of the buffers shall adapt to
+     *         the input.
+     * @return A copy of these options with the given adaption mode.
+     */
+    public CopyOptions withAdaptive(boolean adaptive) {
+        return new CopyOptions(fifoSize, bufferSize, adaptive, executor,
+                sameThreadThreshold);
+    }
+
+    /**
+     * Returns the executor for running the reader tasks.
+     * The default executor is shared:
+     * If the JVM supports virtual threads, then it starts a new virtual thread
+     * for each reader task.
+     * Otherwise, or if the system property
+     * {@code net.java.truecommons3.io.Streams.platformThreads} is set to
+     * {@code true}, it uses a bounded pool of cached daemon threads and
+     * rejects a reader task if all of its threads are busy.
+     * If an executor rejects a reader task, then the copy gets run by the
+     * writer thread alone.
+     *
+     * @return The executor for running the reader tasks.
+     * @see    RejectedExecutionException
+     */
+    public ExecutorService getExecutor() { return executor; }
+
+    /**
+     * Returns a copy of these options with the given executor for running the
+     * reader tasks.
+     * The copy methods never shut down the executor.
+     *
+     * @param  executor the executor for running the reader tasks.
+     * @return A copy of these options with the given executor for running the
+     *         reader tasks.
+     */
+    public CopyOptions withExecutor(ExecutorService executor) {
+        return new CopyOptions(fifoSize, bufferSize, adaptive, executor,
+                sameThreadThreshold);
+    }
+
+    /**
+     * Returns the maximum number of bytes which get copied in the current
+     * thread alone.
+     * This applies only if the size of the input is known, e.g. because it's
+     * provided by a {@link java.nio.channels.SeekableByteChannel}.
+     * Input which is backed by a {@link ByteBufferChannel} or a
+     * {@link SegmentedBufferChannel} always gets copied in the current thread
+     * alone.
+     *
+     * @return The maximum number of bytes which get copied in the current
+     *         thread alone.
+     */
+    public long getSameThreadThreshold() { return sameThreadThreshold; }
+
+    /**
+     * Returns a copy of these options with the given maximum number of bytes
+     * which get copied in the current thread alone.
+     *
+     * @param  sameThreadThreshold the maximum number of bytes which get copied
+     *         in the current thread alone.
+     * @return A copy of these options with the given maximum number of bytes
+     *         which get copied in the current thread alone.
+     * @throws IllegalArgumentException if {@code sameThreadThreshold} is
+     *         negative.
+     */
+    public CopyOptions withSameThreadThreshold(long sameThreadThreshold) {
+        return new CopyOptions(fifoSize, bufferSize, adaptive, executor,
+                sameThreadThreshold);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof CopyOptions))
+            return false;
+        final CopyOptions that = (CopyOptions) obj;
+        return this.fifoSize == that.fifoSize
+                && this.bufferSize == that.bufferSize
+                && this.adaptive == that.adaptive
+                && this.executor.equals(that.executor)
+                && this.sameThreadThreshold == that.sameThreadThreshold;
+    }
+
+    @Override
+    public int hashCode() {
+        int c = 17;
+        c = 31 * c + fifoSize;
+        c = 31 * c + bufferSize;
+        c = 31 * c + (adaptive ? 1 : 0);
+        c = 31 * c + executor.hashCode();
+        c = 31 * c + (int) (sameThreadThreshold ^ (sameThreadThreshold >>> 32));
+        return c;
+    }
+
+    /**
+     * Returns a string representation of this object for debugging and logging
+     * purposes.
+     */
+    @Override
+    public String toString() {
+        return String.format("%s[fifoSize=%d, bufferSize=%d, adaptive=%b, executor=%s, sameThreadThreshold=%d]",
+                getClass().getName(), fifoSize, bufferSize, adaptive, executor, sameThreadThreshold);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects statistics about the copies run by the class {@link Streams}.
+ * Use {@link Streams#getStatistics()} to obtain the statistics and register
+ * them with an MBean server in order to monitor them in production.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @see    Streams#getStatistics()
+ * @author Christian Schlichtherle
+ */
+public final class CopyStatistics implements CopyStatisticsMXBean {
+
+    private final AtomicInteger activeReaders = new AtomicInteger();
+    private final AtomicInteger queuedCopies = new AtomicInteger();
+    private final AtomicLong copies = new AtomicLong();
+    private final AtomicLong sameThreadCopies = new AtomicLong();
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final AtomicLong copyNanos = new AtomicLong();
+
+    CopyStatistics() { }
+
+    @Override
+    public int getActiveReaders() { return activeReaders.get(); }
+
+    @Override
+    public int getQueuedCopies() { return queuedCopies.get(); }
+
+    @Override
+    public long getCopies() { return copies.get(); }
+
+    @Override
+    public long getSameThreadCopies() { return sameThreadCopies.get(); }
+
+    @Override
+    public long getBytesCopied() { return bytesCopied.get(); }
+
+    @Override
+    public long getAverageCopyNanos() {
+        final long copies = this.copies.get();
+        return 0 == copies ? 0 : copyNanos.get() / copies;
+    }
+
+    void queued() { queuedCopies.getAndIncrement(); }
+
+    void dequeued() { queuedCopies.getAndDecrement(); }
+
+    void readerStarted() {
+        queuedCopies.getAndDecrement();
+        activeReaders.getAndIncrement();
+    }
+
+    void readerStopped() { activeReaders.getAndDecrement(); }
+
+    void sameThreadCopy() { sameThreadCopies.getAndIncrement(); }
+
+    void copied(final long bytes, final long nanos) {
+        bytesCopied.getAndAdd(bytes);
+        copyNanos.getAndAdd(nanos);
+        copies.getAndIncrement();
+    }
+
+    /**
+     * Returns a string representation of this object for debugging and logging
+     * purposes.
+     */
+    @Override
+    public String toString() {
+        return String.format("%s[activeReaders=%d, queuedCopies=%d, copies=%d, sameThreadCopies=%d, bytesCopied=%d, averageCopyNanos=%d]",
+                getClass().getName(),
+                getActiveReaders(),
+                getQueuedCopies(),
+                getCopies(),
+                getSameThreadCopies(),
+                getBytesCopied(),
+                getAverageCopyNanos());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io;
+
+/**
+ * The MXBean interface for {@link CopyStatistics}.
+ *
+ * @author Christian Schlichtherle
+ */
+public interface CopyStatisticsMXBean {
+
+    /**
+     * Returns the number of reader tasks which are currently running.
+     *
+     * @return The number of reader tasks which are currently running.
+     */
+    int getActiveReaders();
+
+    /**
+     * Returns the number of copies which have submitted a reader task to
+     * their executor which has not yet started to run.
+     *
+     * @return The number of copies which wait for their reader task to start.
+     */
+    int getQueuedCopies();
+
+    /**
+     * Returns the number of copies which have completed, whether successfully
+     * or not.
+     *
+     * @return The number of copies which have completed.
+     */
+    long getCopies();
+
+    /**
+     * Returns the number of copies which have been run by the writer thread
+     * alone because their executor rejected the reader task, e.g. because it
+     * was saturated.
+     *
+     * @return The number of copies which have been run by the writer thread
+     *         alone.
+     */
+    long getSameThreadCopies();
+
+    /**
+     * Returns the total number of bytes written by all completed copies.
+     *
+     * @return The total number of bytes written by all completed copies.
+     */
+    long getBytesCopied();
+
+    /**
+     * Returns the average duration of all completed copies in nanoseconds or
+     * zero if no copy has completed yet.
+     *
+     * @return The average duration of all completed copies in nanoseconds.
+     */
+    long getAverageCopyNanos();
+}
@@ -6,7 +6,11 @@ package net.java.truecommons3.io;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Objects;
 
 /**
@@ -18,10 +22,21 @@ import java.util.Objects;
  * after you have finished using this seekable byte channel, then you should
  * not assume a particular position of the file pointer of the decorated
  * seekable byte channel.
+ * <p>
+ * This class also supports scattering reads and gathering writes.
+ * By default, these call {@link #read(ByteBuffer)} or
+ * {@link #write(ByteBuffer)} for each buffer, so sub-classes which override
+ * these methods work as expected.
+ * Sub-classes which forward the data to the decorated channel should
+ * override the vectored methods to call {@link #scatter} or
+ * {@link #gather}, so that a {@link java.nio.channels.FileChannel} can read
+ * or write all buffers in a single system call.
  *
  * @author Christian Schlichtherle
  */
-public abstract class DecoratingSeekableChannel extends AbstractSeekableChannel {
+public abstract class DecoratingSeekableChannel
+extends AbstractSeekableChannel
+implements ScatteringByteChannel, GatheringByteChannel {
 
     /** The decorated channel. */
     protected final SeekableByteChannel channel;
@@ -46,11 +61,134 @@ public abstract class DecoratingSeekableChannel extends AbstractSeekableChannel
         return channel.read(dst);
     }
 
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The implementation in the class {@link DecoratingSeekableChannel}
+     * calls {@link #read(ByteBuffer)} for each buffer until a read does not
+     * fill its buffer.
+     */
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length)
+    throws IOException {
+        return read(this, dsts, offset, length);
+    }
+
     @Override
     public int write(ByteBuffer src) throws IOException {
         return channel.write(src);
     }
 
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The implementation in the class {@link DecoratingSeekableChannel}
+     * calls {@link #write(ByteBuffer)} for each buffer until a write does
+     * not drain its buffer.
+     */
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length)
+    throws IOException {
+        return write(this, srcs, offset, length);
+    }
+
+    /**
+     * Reads a sequence of bytes from the decorated channel into the given
+     * buffers.
+     * If the decorated channel is a {@link ScatteringByteChannel}, then this
+     * method forwards the call, otherwise it reads each buffer in turn.
+     *
+     * @param  dsts the buffers into which bytes are to be transferred.
+     * @param  offset the offset of the first buffer to use.
+     * @param  length the maximum number of buffers to use.
+     * @return The number of bytes read or {@code -1} on end-of-stream.
+     * @throws IOException on any I/O error.
+     */
+    protected final long scatter(ByteBuffer[] dsts, int offset, int length)
+    throws IOException {
+        return channel instanceof ScatteringByteChannel
+                ? ((ScatteringByteChannel) channel).read(dsts, offset, length)
+                : read(channel, dsts, offset, length);
+    }
+
+    /**
+     * Writes a sequence of bytes to the decorated channel from the given
+     * buffers.
+     * If the decorated channel is a {@link GatheringByteChannel}, then this
+     * method forwards the call, otherwise it writes each buffer in turn.
+     *
+     * @param  srcs the buffers from which bytes are to be retrieved.
+     * @param  offset the offset of the first buffer to use.
+     * @param  length the maximum number of buffers to use.
+     * @return The number of bytes written.
+     * @throws IOException on any I/O error.
+     */
+    protected final long gather(ByteBuffer[] srcs, int offset, int length)
+    throws IOException {
+        return channel instanceof GatheringByteChannel
+                ? ((GatheringByteChannel) channel).write(srcs, offset, length)
+                : write(channel, srcs, offset, length);
+    }
+
+    private static long read(
+            final ReadableByteChannel channel,
+            final ByteBuffer[] dsts,
+            final int offset,
+            final int length)
+    throws IOException {
+        checkBounds(dsts.length, offset, length);
+        long total = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            final ByteBuffer dst = dsts[i];
+            if (!dst.hasRemaining())
+                continue;
+            final int read = channel.read(dst);
+            if (0 > read)
+                return 0 == total ? -1 : total;
+            total += read;
+            if (dst.hasRemaining())
+                break;
+        }
+        return total;
+    }
+
+    private static long write(
+            final WritableByteChannel channel,
+            final ByteBuffer[] srcs,
+            final int offset,
+            final int length)
+    throws IOException {
+        checkBounds(srcs.length, offset, length);
+        long total = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            final ByteBuffer src = srcs[i];
+            if (!src.hasRemaining())
+                continue;
+            total += channel.write(src);
+            if (src.hasRemaining())
+                break;
+        }
+        return total;
+    }
+
+    private static void checkBounds(
+            final int arrayLength,
+            final int offset,
+            final int length) {
+        if (0 > offset || 0 > length || arrayLength - length < offset)
+            throw new IndexOutOfBoundsException();
+    }
+
     @Override
     public long position() throws IOException {
         return channel.position();
@@ -78,6 +216,21 @@ public abstract class DecoratingSeekableChannel extends AbstractSeekableChannel
         channel.close();
     }
 
+    /**
+     * Returns {@code true} if and only if this channel reads and writes the
+     * same bytes at the same positions as the decorated channel.
+     * Bulk transfers like {@link Streams#transfer(Source, Sink)} may then
+     * bypass this channel and access the decorated channel directly.
+     * <p>
+     * The implementation in the class {@link DecoratingSeekableChannel}
+     * returns {@code false}.
+     * Subclasses which forward the data without altering it should override
+     * this method.
+     *
+     * @return Whether or not this channel is transparent for bulk transfers.
+     */
+    protected boolean isTransparent() { return false; }
+
     /**
      * Returns a string representation of this object for debugging and logging
      * purposes.
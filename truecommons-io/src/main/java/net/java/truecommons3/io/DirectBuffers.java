@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Provides utility methods for direct byte buffers.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class DirectBuffers {
+
+    private static final Releaser releaser = Releaser.newInstance();
+
+    private DirectBuffers() { }
+
+    /**
+     * Releases the memory of the given direct byte buffer immediately rather
+     * than waiting for the garbage collector to do this.
+     * This works for direct byte buffers which have been allocated by
+     * {@link ByteBuffer#allocateDirect(int)} and for mapped byte buffers, but
+     * not for their duplicates or slices.
+     * This uses an internal API of the JVM.
+     * If this API is unavailable, then the memory gets released by the
+     * garbage collector as usual.
+     * <p>
+     * Because accessing the memory of a released buffer would crash the JVM,
+     * neither the given buffer nor any of its duplicates or slices must get
+     * used anymore, not even by another thread.
+     *
+     * @param  buffer the direct byte buffer to release.
+     * @return Whether or not the memory of the given buffer has been released.
+     *         If this is {@code false}, then it gets released by the garbage
+     *         collector.
+     */
+    public static boolean release(ByteBuffer buffer) {
+        return buffer.isDirect() && releaser.release(buffer);
+    }
+
+    /**
+     * Releases the memory of a direct byte buffer immediately using an
+     * internal API of the JVM.
+     */
+    private static class Releaser {
+
+        static Releaser newInstance() {
+            try {
+                // Requires JSE 9 or later.
+                final Class<?> c = Class.forName("sun.misc.Unsafe");
+                final Field f = c.getDeclaredField("theUnsafe");
+                f.setAccessible(true);
+                final Object unsafe = f.get(null);
+                final Method m = c.getMethod("invokeCleaner", ByteBuffer.class);
+                return new Releaser() {
+                    @Override
+                    boolean release(final ByteBuffer buffer) {
+                        try {
+                            m.invoke(unsafe, buffer);
+                            return true;
+                        } catch (ReflectiveOperationException | RuntimeException ex) {
+                            // Leave it to the garbage collector.
+                            return false;
+                        }
+                    }
+                };
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                // Fall through.
+            }
+            try {
+                // Requires JSE 7 or 8.
+                final Method m = Class
+                        .forName("sun.nio.ch.DirectBuffer")
+                        .getMethod("cleaner");
+                final Method clean = m.getReturnType().getMethod("clean");
+                return new Releaser() {
+                    @Override
+                    boolean release(final ByteBuffer buffer) {
+                        try {
+                            final Object cleaner = m.invoke(buffer);
+                            if (null == cleaner)
+                                return false;
+                            clean.invoke(cleaner);
+                            return true;
+                        } catch (ReflectiveOperationException | RuntimeException ex) {
+                            // Leave it to the garbage collector.
+                            return false;
+                        }
+                    }
+                };
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                // Leave it to the garbage collector.
+                return new Releaser();
+            }
+        }
+
+        /**
+         * Releases the given buffer.
+         * The implementation in the class {@link Releaser} does nothing and
+         * returns {@code false}.
+         */
+        boolean release(ByteBuffer buffer) { return false; }
+    } // Releaser
+}
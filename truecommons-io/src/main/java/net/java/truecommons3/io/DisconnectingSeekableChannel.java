@@ -11,6 +11,12 @@ import java.nio.channels.SeekableByteChannel;
 /**
  * An abstract decorator which protects the decorated channel from all access
  * unless it's {@linkplain #isOpen() open}.
+ * <p>
+ * This channel is not
+ * {@linkplain DecoratingSeekableChannel#isTransparent() transparent} because
+ * subclasses may alter the data.
+ * Subclasses which forward the data without altering it may override
+ * {@link #isTransparent()} to return {@code true}.
  *
  * @author Christian Schlichtherle
  */
@@ -36,12 +42,46 @@ extends DecoratingSeekableChannel {
         return channel.read(dst);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If this channel is {@linkplain #isTransparent() transparent}, then the
+     * implementation in the class {@link DisconnectingSeekableChannel}
+     * forwards the call to the decorated channel.
+     * Otherwise, it calls {@link #read(ByteBuffer)} for each buffer.
+     */
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length)
+    throws IOException {
+        checkOpen();
+        return isTransparent()
+                ? scatter(dsts, offset, length)
+                : super.read(dsts, offset, length);
+    }
+
     @Override
     public int write(ByteBuffer src) throws IOException {
         checkOpen();
         return channel.write(src);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If this channel is {@linkplain #isTransparent() transparent}, then the
+     * implementation in the class {@link DisconnectingSeekableChannel}
+     * forwards the call to the decorated channel.
+     * Otherwise, it calls {@link #write(ByteBuffer)} for each buffer.
+     */
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length)
+    throws IOException {
+        checkOpen();
+        return isTransparent()
+                ? gather(srcs, offset, length)
+                : super.write(srcs, offset, length);
+    }
+
     @Override
     public long position() throws IOException {
         checkOpen();
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free ring of reusable slots for exchanging data between exactly one
+ * producer thread and exactly one consumer thread.
+ * <p>
+ * The producer calls {@link #awaitPut()} to obtain the next free slot, fills
+ * it and then calls {@link #put()} to publish it.
+ * The consumer calls {@link #awaitTake()} to obtain the next published slot,
+ * drains it and then calls {@link #take()} to recycle it.
+ * The positions of the producer and the consumer are tracked by two volatile
+ * sequence numbers, so no locks are required.
+ * A waiting thread spins for a short while before it parks until the other
+ * thread changes its sequence number.
+ * <p>
+ * This class is thread-safe if and only if there is at most one producer
+ * thread and at most one consumer thread at any time.
+ *
+ * @param  <E> the type of the slots.
+ * @author Christian Schlichtherle
+ */
+final class Fifo<E> {
+
+    /** The number of spin loop cycles before a waiting thread parks. */
+    private static final int SPINS = 1 << 7;
+
+    private final E[] slots;
+
+    /** The number of slots published by the producer. */
+    private volatile long tail;
+
+    /** The number of slots recycled by the consumer. */
+    private volatile long head;
+
+    /** The producer thread if it's parked or about to park. */
+    private volatile Thread producer;
+
+    /** The consumer thread if it's parked or about to park. */
+    private volatile Thread consumer;
+
+    /** The last value of {@link #head} read by the producer. */
+    private long producerHead;
+
+    /** The last value of {@link #tail} read by the consumer. */
+    private long consumerTail;
+
+    /**
+     * Constructs a new FIFO.
+     *
+     * @param slots the slots to cycle through.
+     *        This array is shared, not copied.
+     *        It must have a length of at least one.
+     */
+    Fifo(final E[] slots) {
+        if (0 >= slots.length)
+            throw new IllegalArgumentException();
+        this.slots = slots;
+    }
+
+    /**
+     * Waits until a free slot is available and returns it.
+     * This method must only get called by the producer thread.
+     *
+     * @return The free slot to fill.
+     * @throws InterruptedException if the current thread has been interrupted
+     *         while waiting.
+     */
+    E awaitPut() throws InterruptedException {
+        final long tail = this.tail;
+        final int length = slots.length;
+        if (tail - producerHead >= length) {
+            for (int spins = SPINS; tail - (producerHead = head) >= length; ) {
+                if (0 < spins) {
+                    spins--;
+                } else {
+                    producer = Thread.currentThread();
+                    try {
+                        if (tail - head >= length)
+                            LockSupport.park(this);
+                    } finally {
+                        producer = null;
+                    }
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+                }
+            }
+        }
+        return slots[(int) (tail % length)];
+    }
+
+    /**
+     * Publishes the slot previously returned by {@link #awaitPut()} to the
+     * consumer thread.
+     * This method must only get called by the producer thread.
+     */
+    void put() {
+        tail++; // only the producer thread writes this field!
+        final Thread consumer = this.consumer;
+        if (null != consumer)
+            LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Waits until a published slot is available and returns it.
+     * This method must only get called by the consumer thread.
+     *
+     * @return The published slot to drain.
+     * @throws InterruptedException if the current thread has been interrupted
+     *         while waiting.
+     */
+    E awaitTake() throws InterruptedException {
+        final long head = this.head;
+        if (head >= consumerTail) {
+            for (int spins = SPINS; head >= (consumerTail = tail); ) {
+                if (0 < spins) {
+                    spins--;
+                } else {
+                    consumer = Thread.currentThread();
+                    try {
+                        if (head >= tail)
+                            LockSupport.park(this);
+                    } finally {
+                        consumer = null;
+                    }
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+                }
+            }
+        }
+        return slots[(int) (head % slots.length)];
+    }
+
+    /**
+     * Recycles the slot previously returned by {@link #awaitTake()} for the
+     * producer thread.
+     * This method must only get called by the consumer thread.
+     */
+    void take() {
+        head++; // only the consumer thread writes this field!
+        final Thread producer = this.producer;
+        if (null != producer)
+            LockSupport.unpark(producer);
+    }
+}
@@ -6,12 +6,22 @@ package net.java.truecommons3.io;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 
 /**
  * Provides read-only access to an interval of its decorated seekable byte
  * channel.
  * Note that this class maintains its own virtual file pointer.
+ * <p>
+ * If this channel does not have exclusive access to the decorated channel and
+ * the decorated channel is a {@link FileChannel}, then this channel uses
+ * positional reads via {@link FileChannel#read(ByteBuffer, long)}.
+ * This leaves the file pointer of the decorated channel untouched, so many
+ * interval channels can concurrently read the same file channel without
+ * locking it.
+ * Likewise, if the decorated channel is a {@link LockSeekableChannel}, then
+ * this channel uses {@link LockSeekableChannel#read(ByteBuffer, long)}.
  *
  * @author Christian Schlichtherle
  */
@@ -33,6 +43,18 @@ public final class IntervalReadOnlyChannel extends ReadOnlyChannel {
      */
     private final boolean exclusive;
 
+    /**
+     * The decorated channel if it's a file channel which supports positional
+     * reads without exclusive access, otherwise {@code null}.
+     */
+    private final FileChannel positional;
+
+    /**
+     * The decorated channel if it's a lock seekable channel without exclusive
+     * access, otherwise {@code null}.
+     */
+    private final LockSeekableChannel locked;
+
     /**
      * The virtual file pointer.
      * This is relative to {@link #start}.
@@ -68,6 +90,9 @@ public final class IntervalReadOnlyChannel extends ReadOnlyChannel {
      * exclusive access to the decorated seekable byte channel and positions
      * the file pointer in the decorated seekable byte channel before each read
      * operation!
+     * However, if the decorated seekable byte channel is a
+     * {@link FileChannel} or a {@link LockSeekableChannel}, then its file
+     * pointer is left untouched because positional reads get used instead.
      *
      * @param  channel the channel to decorate.
      * @param  start the start of the interval.
@@ -91,6 +116,12 @@ public final class IntervalReadOnlyChannel extends ReadOnlyChannel {
         this.start = start;
         this.size = size;
         this.exclusive = exclusive;
+        this.positional = !exclusive && channel instanceof FileChannel
+                ? (FileChannel) channel
+                : null;
+        this.locked = !exclusive && channel instanceof LockSeekableChannel
+                ? (LockSeekableChannel) channel
+                : null;
     }
 
     @Override
@@ -120,9 +151,15 @@ public final class IntervalReadOnlyChannel extends ReadOnlyChannel {
         // Operate.
         final int read;
         try {
-            if (!exclusive)
-                channel.position(start + pos);
-            read = channel.read(dst);
+            if (null != positional) {
+                read = positional.read(dst, start + pos);
+            } else if (null != locked) {
+                read = locked.read(dst, start + pos);
+            } else {
+                if (!exclusive)
+                    channel.position(start + pos);
+                read = channel.read(dst);
+            }
         } finally {
             if (0 <= limit) dst.limit(limit);
         }
@@ -153,7 +190,8 @@ public final class IntervalReadOnlyChannel extends ReadOnlyChannel {
     public SeekableByteChannel position(final long pos) throws IOException {
         //checkOpen();
         if (0 > pos) throw new IllegalArgumentException();
-        channel.position(start + pos);
+        if (null == positional && null == locked)
+            channel.position(start + pos);
         this.pos = pos;
         return this;
     }
@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A buffered input stream to read data in Little Endian (LE) format.
+ * <p>
+ * This class is the counterpart of {@link LittleEndianOutputStream}.
+ * It is similar to {@link DataInputStream}, but reads data in Little Endian
+ * format from its underlying stream or channel.
+ * Like {@link PowerBuffer}, it provides getters for unsigned integers, e.g.
+ * {@link #readUShort()} and {@link #readUInt()}.
+ * <p>
+ * The data gets buffered in a byte buffer in Little Endian byte order which
+ * gets refilled in large blocks, so reading a value does not allocate any
+ * objects.
+ * If the data source is a channel, then the buffer gets filled directly from
+ * the channel.
+ * Note that this stream may read ahead, so the data source should not get
+ * used by anyone else while this stream is in use.
+ *
+ * @see    LittleEndianOutputStream
+ * @author Christian Schlichtherle
+ */
+public class LittleEndianInputStream extends DecoratingInputStream {
+
+    /**
+     * The buffer for the data.
+     * Its remaining bytes are the bytes which have been read ahead.
+     */
+    private final ByteBuffer buffer;
+
+    /** The nullable channel to fill the buffer from. */
+    private final ReadableByteChannel channel;
+
+    /**
+     * Constructs a new little endian input stream with a buffer size of
+     * {@link Streams#BUFFER_SIZE}.
+     * Closing this stream will close the given stream.
+     *
+     * @param in the stream to decorate.
+     */
+    public LittleEndianInputStream(InputStream in) {
+        this(in, Streams.BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a new little endian input stream.
+     * Closing this stream will close the given stream.
+     *
+     * @param in the stream to decorate.
+     * @param bufferSize the size of the buffer for the data.
+     *        This must be at least eight.
+     */
+    public LittleEndianInputStream(InputStream in, int bufferSize) {
+        this(in, null, bufferSize);
+    }
+
+    /**
+     * Constructs a new little endian input stream with a buffer size of
+     * {@link Streams#BUFFER_SIZE}.
+     * Closing this stream will close the given channel.
+     *
+     * @param channel the channel to read.
+     */
+    public LittleEndianInputStream(ReadableByteChannel channel) {
+        this(channel, Streams.BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a new little endian input stream.
+     * Closing this stream will close the given channel.
+     *
+     * @param channel the channel to read.
+     * @param bufferSize the size of the buffer for the data.
+     *        This must be at least eight.
+     */
+    public LittleEndianInputStream(
+            ReadableByteChannel channel,
+            int bufferSize) {
+        this(Channels.newInputStream(channel), channel, bufferSize);
+    }
+
+    private LittleEndianInputStream(
+            final InputStream in,
+            final ReadableByteChannel channel,
+            final int bufferSize) {
+        super(in);
+        if (8 > bufferSize)
+            throw new IllegalArgumentException("Buffer size too small: " + bufferSize);
+        this.channel = channel;
+        this.buffer = (ByteBuffer) ByteBuffer
+                .allocate(bufferSize)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .limit(0);
+    }
+
+    /**
+     * Returns the buffer after making sure that it has at least the given
+     * number of bytes remaining.
+     *
+     * @throws EOFException if the end of the data is reached before.
+     */
+    private ByteBuffer require(final int n) throws IOException {
+        final ByteBuffer buffer = this.buffer;
+        if (buffer.remaining() < n) {
+            buffer.compact();
+            try {
+                do {
+                    if (0 > fill(buffer))
+                        throw new EOFException();
+                } while (buffer.position() < n);
+            } finally {
+                buffer.flip();
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads as many bytes as available without blocking, but at least one,
+     * from the data source into the given buffer.
+     *
+     * @return The number of bytes read or {@code -1} on end-of-file.
+     */
+    @SuppressWarnings("SleepWhileInLoop")
+    private int fill(final ByteBuffer buffer) throws IOException {
+        if (null != channel) {
+            int read;
+            while (0 == (read = channel.read(buffer))) {
+                try {
+                    Thread.sleep(50);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return read;
+        } else {
+            final int position = buffer.position();
+            final int read = in.read(buffer.array(), position,
+                    buffer.remaining());
+            if (0 < read)
+                buffer.position(position + read);
+            return read;
+        }
+    }
+
+    /**
+     * Refills the empty buffer.
+     *
+     * @return The number of bytes read or {@code -1} on end-of-file.
+     */
+    private int refill() throws IOException {
+        final ByteBuffer buffer = this.buffer;
+        assert !buffer.hasRemaining();
+        buffer.clear();
+        try {
+            return fill(buffer);
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        final ByteBuffer buffer = this.buffer;
+        if (!buffer.hasRemaining() && 0 > refill())
+            return -1;
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+    throws IOException {
+        if (0 > off || 0 > len || b.length - len < off)
+            throw new IndexOutOfBoundsException();
+        if (0 == len)
+            return 0;
+        final ByteBuffer buffer = this.buffer;
+        if (!buffer.hasRemaining()) {
+            if (len >= buffer.capacity()) {
+                // Bypass the buffer.
+                return fill(ByteBuffer.wrap(b, off, len));
+            }
+            if (0 > refill())
+                return -1;
+        }
+        final int n = Math.min(buffer.remaining(), len);
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    /**
+     * Reads the given number of bytes into the given array.
+     *
+     * @param  b the array into which the data is read.
+     * @param  off the start offset in the array.
+     * @param  len the number of bytes to read.
+     * @throws EOFException if the end of the data is reached before reading
+     *         all bytes.
+     * @throws IOException on any other I/O error.
+     */
+    public final void readFully(final byte[] b, int off, int len)
+    throws IOException {
+        if (0 > off || 0 > len || b.length - len < off)
+            throw new IndexOutOfBoundsException();
+        while (0 < len) {
+            final int read = read(b, off, len);
+            if (0 > read)
+                throw new EOFException();
+            off += read;
+            len -= read;
+        }
+    }
+
+    /**
+     * Reads bytes into the given array until it's full.
+     *
+     * @param  b the array into which the data is read.
+     * @throws EOFException if the end of the data is reached before reading
+     *         all bytes.
+     * @throws IOException on any other I/O error.
+     */
+    public final void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        if (0 >= n)
+            return 0;
+        final ByteBuffer buffer = this.buffer;
+        if (!buffer.hasRemaining() && 0 > refill())
+            return 0;
+        final int skip = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skip);
+        return skip;
+    }
+
+    @Override
+    public int available() throws IOException {
+        final int remaining = buffer.remaining();
+        return null != channel
+                ? remaining
+                : (int) Math.min(Integer.MAX_VALUE,
+                    (long) remaining + in.available());
+    }
+
+    /** @return {@code false} */
+    @Override
+    public boolean markSupported() { return false; }
+
+    /** Does nothing. */
+    @Override
+    public void mark(int readlimit) { }
+
+    /** @throws IOException always. */
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark()/reset() not supported!");
+    }
+
+    /**
+     * Reads a {@code boolean} value as a 1-byte value.
+     *
+     * @return The {@code boolean} value read.
+     * @throws EOFException if the end of the data is reached.
+     * @throws IOException on any other I/O error.
+     */
+    public final boolean readBoolean() throws IOException {
+        return 0 != require(1).get();
+    }
+
+    /**
+     * Reads a {@code byte} value as a 1-byte value.
+     *
+     * @return The {@code byte} value read.
+     * @throws EOFException if the end of the data is reached.
+     * @throws IOException on any other I/O error.
+     */
+    public final byte readByte() throws IOException {
+        return require(1).get();
+    }
+
+    /**
+     * Reads an unsigned byte value as a 1-byte value.
+     *
+     * @return The unsigned byte value read.
+     * @throws EOFException if the end of the data is reached.
+     * @throws IOException on any other I/O error.
+     * @see    PowerBuffer#getUByte()
+     */
+    public final int readUByte() throws IOException {
+        return require(1).get() & 0xff;
+    }
+
+    /**
+     * Reads a {@code short} value as two bytes, low byte first.
+     *
+     * @return The {@code short} value read.
+     * @throws EOFException if the end of the data is reached.
+     * @throws IOException on any other I/O error.
+     */
+    public final short readShort() throws IOException {
+        return require(2).getShort();
+    }
+
+    /**
+     * Reads an unsigned short integer value as two bytes, low byte first.
+     *
+     * @return The unsigned short integer value read.
+     * @throws EOFException if the end of the data is reached.
+     * @throws IOException on any other I/O error.
+     * @see    PowerBuffer#getUShort()
+     */
+    public final int readUShort() throws IOException {
+        return require(2).getShort() & 0xffff;
+    }
+
+    /**
+     * Reads a {@code char} value as two bytes, low byte first.
+     *
+     * @return The {@code char} value read.
+     * @throws EOFException if the end of the data is reached.
+     * @throws IOException on any other I/O error.
+     */
+    public final char readChar() throws IOException {
+        return require(2).getChar();
+    }
+
+    /**
+     * Reads an integer value as four bytes, low byte first.
+     *
+     * @return The integer value read.
+     * @throws EOFException if the end of the data is reached.
+     * @throws IOException on any other I/O error.
+     */
+    public final int readInt() throws IOException {
+        return require(4).getInt();
+    }
+
+    /**
+     * Reads an unsigned integer value as four bytes, low byte first.
+     *
+     * @return The unsigned integer value read.
+     * @throws EOFException if the end of the data is reached.
+     * @throws IOException on any other I/O error.
+     * @see    PowerBuffer#getUInt()
+     */
+    public final long readUInt() throws IOException {
+        return require(4).getInt() & 0xffff_ffffL;
+    }
+
+    /**
+     * Reads a long integer value as eight bytes, low byte first.
+     *
+     * @return The long integer value read.
+     * @throws EOFException if the end of the data is reached.
+     * @throws IOException on any other I/O error.
+     */
+    public final long readLong() throws IOException {
+        return require(8).getLong();
+    }
+
+    /**
+     * Reads a {@code float} value as four bytes, low byte first.
+     *
+     * @return The {@code float} value read.
+     * @throws EOFException if the end of the data is reached.
+     * @throws IOException on any other I/O error.
+     * @see    java.lang.Float#intBitsToFloat(int)
+     */
+    public final float readFloat() throws IOException {
+        return require(4).getFloat();
+    }
+
+    /**
+     * Reads a {@code double} value as eight bytes, low byte first.
+     *
+     * @return The {@code double} value read.
+     * @throws EOFException if the end of the data is reached.
+     * @throws IOException on any other I/O error.
+     * @see    java.lang.Double#longBitsToDouble(long)
+     */
+    public final double readDouble() throws IOException {
+        return require(8).getDouble();
+    }
+}
@@ -7,6 +7,8 @@ package net.java.truecommons3.io;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * An output stream to write data in Little Endian (LE) format.
@@ -16,6 +18,14 @@ import java.io.OutputStream;
  * A noteable difference to {@code DataOutputStream} is that the
  * {@link #size()} method and the {@link #written} field are respectively
  * return {@code long} values.
+ * <p>
+ * Optionally, this stream buffers its data in a byte buffer in Little Endian
+ * byte order, so that writing many small values, e.g. the fields of a ZIP
+ * header, results in a few large writes to the underlying stream.
+ * In this mode, the {@link #size()} still accounts for all bytes written to
+ * this stream, including the buffered bytes, but sub-classes must
+ * {@link #flush()} this stream before writing to the underlying stream
+ * directly.
  *
  * @author Christian Schlichtherle
  */
@@ -30,10 +40,46 @@ public class LittleEndianOutputStream extends DecoratingOutputStream {
      */
     protected long written;
 
-    /** This buffer is used for writing data. */
-    private final byte[] buf = new byte[8];
+    /**
+     * This buffer is used for writing data.
+     * If this stream is not buffered, then this buffer has a capacity of
+     * eight bytes and gets drained after writing each value.
+     */
+    private final ByteBuffer buffer;
 
-    public LittleEndianOutputStream(OutputStream out) { super(out); }
+    /** Whether or not this stream is buffered. */
+    private final boolean buffered;
+
+    /**
+     * Constructs a new unbuffered little endian output stream.
+     * Closing this stream will close the given stream.
+     *
+     * @param out the stream to decorate.
+     */
+    public LittleEndianOutputStream(OutputStream out) { this(out, 0); }
+
+    /**
+     * Constructs a new little endian output stream.
+     * Closing this stream will close the given stream.
+     *
+     * @param out the stream to decorate.
+     * @param bufferSize the size of the buffer for the data.
+     *        If this is zero, then this stream is unbuffered.
+     *        Otherwise, it must be at least eight.
+     */
+    public LittleEndianOutputStream(
+            final OutputStream out,
+            final int bufferSize) {
+        super(out);
+        if (0 > bufferSize)
+            throw new IllegalArgumentException("Negative buffer size: " + bufferSize);
+        if (0 < bufferSize && 8 > bufferSize)
+            throw new IllegalArgumentException("Buffer size too small: " + bufferSize);
+        this.buffered = 0 < bufferSize;
+        this.buffer = ByteBuffer
+                .allocate(buffered ? bufferSize : 8)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
 
     /**
      * Increases the written counter by the specified value
@@ -44,6 +90,50 @@ public class LittleEndianOutputStream extends DecoratingOutputStream {
         written = s >= 0 ? s : Long.MAX_VALUE;
     }
 
+    /**
+     * Returns the buffer after making sure that it has at least the given
+     * number of bytes remaining.
+     */
+    private ByteBuffer reserve(final int n) throws IOException {
+        final ByteBuffer buffer = this.buffer;
+        if (buffer.remaining() < n)
+            drain();
+        return buffer;
+    }
+
+    /**
+     * Drains the buffer unless this stream is buffered and then accounts for
+     * the given number of bytes put into the buffer.
+     */
+    private void commit(final int n) throws IOException {
+        if (!buffered)
+            drain();
+        inc(n);
+    }
+
+    /**
+     * Writes the buffered data to the underlying stream.
+     * If this stream is buffered, then the buffer only gets cleared if this
+     * succeeds, so the data of previous writes does not get lost if the
+     * underlying stream fails.
+     * Otherwise, the buffer only holds the value of the current write, so it
+     * gets cleared in any case in order not to write it again with the next
+     * value.
+     */
+    private void drain() throws IOException {
+        final ByteBuffer buffer = this.buffer;
+        final int position = buffer.position();
+        if (0 < position) {
+            try {
+                out.write(buffer.array(), 0, position);
+            } finally {
+                if (!buffered)
+                    buffer.clear();
+            }
+            buffer.clear();
+        }
+    }
+
     /**
      * Writes the specified byte (the low eight bits of the argument
      * {@code b}) to the underlying output stream.
@@ -56,8 +146,14 @@ public class LittleEndianOutputStream extends DecoratingOutputStream {
      * @throws IOException on any I/O error.
      */
     @Override
-    public void write(int b) throws IOException {
-	    out.write(b);
+    public void write(int b) throws IOException { put(b); }
+
+    private void put(final int b) throws IOException {
+        if (buffered) {
+            reserve(1).put((byte) b);
+        } else {
+            out.write(b);
+        }
         inc(1);
     }
 
@@ -74,7 +170,17 @@ public class LittleEndianOutputStream extends DecoratingOutputStream {
      */
     @Override
     public void write(byte b[], int off, int len) throws IOException {
-        out.write(b, off, len);
+        put(b, off, len);
+    }
+
+    private void put(final byte[] b, final int off, final int len)
+    throws IOException {
+        if (buffered && len < buffer.capacity()) {
+            reserve(len).put(b, off, len);
+        } else {
+            drain();
+            out.write(b, off, len);
+        }
         inc(len);
     }
 
@@ -90,8 +196,7 @@ public class LittleEndianOutputStream extends DecoratingOutputStream {
      * @throws IOException on any I/O error.
      */
     public final void writeBoolean(boolean b) throws IOException {
-        out.write(b ? 1 : 0);
-        inc(1);
+        put(b ? 1 : 0);
     }
 
     /**
@@ -104,8 +209,7 @@ public class LittleEndianOutputStream extends DecoratingOutputStream {
      * @throws IOException on any I/O error.
      */
     public final void writeByte(int b) throws IOException {
-    	out.write(b);
-        inc(1);
+        put(b);
     }
 
     /**
@@ -118,11 +222,8 @@ public class LittleEndianOutputStream extends DecoratingOutputStream {
      * @throws IOException on any I/O error.
      */
     public final void writeShort(int s) throws IOException {
-        buf[0] = (byte) s;
-        s >>= 8;
-        buf[1] = (byte) s;
-        out.write(buf, 0, 2);
-        inc(2);
+        reserve(2).putShort((short) s);
+        commit(2);
     }
 
     /**
@@ -148,15 +249,46 @@ public class LittleEndianOutputStream extends DecoratingOutputStream {
      * @throws IOException on any I/O error.
      */
     public final void writeInt(int i) throws IOException {
-        buf[0] = (byte) i;
-        i >>= 8;
-        buf[1] = (byte) i;
-        i >>= 8;
-        buf[2] = (byte) i;
-        i >>= 8;
-        buf[3] = (byte) i;
-        out.write(buf, 0, 4);
-        inc(4);
+        reserve(4).putInt(i);
+        commit(4);
+    }
+
+    /**
+     * Writes the given integer values to the underlying output stream
+     * as four bytes each, low byte first.
+     * If no exception is thrown, the counter {@code written} is
+     * incremented by four times the length of the array.
+     *
+     * @param a The integer values to be written.
+     * @throws IOException on any I/O error.
+     */
+    public final void writeInts(int[] a) throws IOException {
+        writeInts(a, 0, a.length);
+    }
+
+    /**
+     * Writes {@code len} integer values from the given array starting at
+     * offset {@code off} to the underlying output stream
+     * as four bytes each, low byte first.
+     * If no exception is thrown, the counter {@code written} is
+     * incremented by four times {@code len}.
+     *
+     * @param a The integer values to be written.
+     * @param off The start offset in the array.
+     * @param len The number of integer values to write.
+     * @throws IOException on any I/O error.
+     */
+    public final void writeInts(final int[] a, int off, final int len)
+    throws IOException {
+        if (0 > off || 0 > len || a.length - len < off)
+            throw new IndexOutOfBoundsException();
+        final ByteBuffer buffer = this.buffer;
+        for (final int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, reserve(4).remaining() / 4);
+            for (final int stop = off + n; off < stop; off++)
+                buffer.putInt(a[off]);
+            commit(4 * n);
+        }
     }
 
     /**
@@ -169,23 +301,88 @@ public class LittleEndianOutputStream extends DecoratingOutputStream {
      * @throws IOException on any I/O error.
      */
     public final void writeLong(long l) throws IOException {
-        buf[0] = (byte) l;
-        l >>= 8;
-        buf[1] = (byte) l;
-        l >>= 8;
-        buf[2] = (byte) l;
-        l >>= 8;
-        buf[3] = (byte) l;
-        l >>= 8;
-        buf[4] = (byte) l;
-        l >>= 8;
-        buf[5] = (byte) l;
-        l >>= 8;
-        buf[6] = (byte) l;
-        l >>= 8;
-        buf[7] = (byte) l;
-        out.write(buf, 0, 8);
-    	inc(8);
+        reserve(8).putLong(l);
+        commit(8);
+    }
+
+    /**
+     * Writes the given long integer values to the underlying output stream
+     * as eight bytes each, low byte first.
+     * If no exception is thrown, the counter {@code written} is
+     * incremented by eight times the length of the array.
+     *
+     * @param a The long integer values to be written.
+     * @throws IOException on any I/O error.
+     */
+    public final void writeLongs(long[] a) throws IOException {
+        writeLongs(a, 0, a.length);
+    }
+
+    /**
+     * Writes {@code len} long integer values from the given array starting
+     * at offset {@code off} to the underlying output stream
+     * as eight bytes each, low byte first.
+     * If no exception is thrown, the counter {@code written} is
+     * incremented by eight times {@code len}.
+     *
+     * @param a The long integer values to be written.
+     * @param off The start offset in the array.
+     * @param len The number of long integer values to write.
+     * @throws IOException on any I/O error.
+     */
+    public final void writeLongs(final long[] a, int off, final int len)
+    throws IOException {
+        if (0 > off || 0 > len || a.length - len < off)
+            throw new IndexOutOfBoundsException();
+        final ByteBuffer buffer = this.buffer;
+        for (final int end = off + len; off < end; ) {
+            final int n = Math.min(end - off, reserve(8).remaining() / 8);
+            for (final int stop = off + n; off < stop; off++)
+                buffer.putLong(a[off]);
+            commit(8 * n);
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of the given power buffer to the underlying
+     * output stream and advances its position to its limit.
+     * If no exception is thrown, the counter {@code written} is
+     * incremented by the number of bytes remaining in the power buffer.
+     *
+     * @param pb The power buffer with the data to be written.
+     * @throws IOException on any I/O error.
+     */
+    public final void writeBuffer(final PowerBuffer<?> pb) throws IOException {
+        final ByteBuffer src = pb.buffer();
+        final int remaining = src.remaining();
+        if (src.hasArray()) {
+            final int position = src.position();
+            put(src.array(), src.arrayOffset() + position, remaining);
+            src.position(position + remaining);
+        } else if (buffered) {
+            final ByteBuffer buffer = this.buffer;
+            final int limit = src.limit();
+            try {
+                while (src.hasRemaining()) {
+                    final int n = Math.min(src.remaining(),
+                            reserve(1).remaining());
+                    src.limit(src.position() + n);
+                    buffer.put(src);
+                    src.limit(limit);
+                    inc(n);
+                }
+            } finally {
+                src.limit(limit);
+            }
+        } else {
+            final byte[] array = new byte[Math.min(remaining, Streams.BUFFER_SIZE)];
+            while (src.hasRemaining()) {
+                final int n = Math.min(src.remaining(), array.length);
+                src.get(array, 0, n);
+                out.write(array, 0, n);
+                inc(n);
+            }
+        }
     }
 
     /**
@@ -263,6 +460,31 @@ public class LittleEndianOutputStream extends DecoratingOutputStream {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    @SuppressWarnings("ThrowFromFinallyBlock")
+    public void close() throws IOException {
+        Throwable t1 = null;
+        try {
+            drain();
+        } catch (final Throwable t2) {
+            t1 = t2;
+            throw t2;
+        } finally {
+            try {
+                out.close();
+            } catch (final Throwable t2) {
+                if (null == t1) throw t2;
+                t1.addSuppressed(t2);
+            }
+        }
+    }
+
     /**
      * Returns the current value of the counter {@code written},
      * the number of bytes written to this data output stream so far.
@@ -6,20 +6,49 @@ package net.java.truecommons3.io;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.util.Objects;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 
 /**
  * Protects all access to its decorated seekable byte channel via a
  * {@link Lock} object.
+ * <p>
+ * When constructed with a {@link ReadWriteLock}, the queries
+ * {@link #isOpen()}, {@link #position()} and {@link #size()} share its read
+ * lock, so they do not block each other.
+ * All other operations, including {@link #read(ByteBuffer)}, which moves the
+ * file pointer, acquire its write lock.
+ * In this case, the decorated channel must support concurrent queries, which
+ * is the case for a {@link FileChannel}.
+ * <p>
+ * For reading without moving the file pointer, use
+ * {@link #read(ByteBuffer, long)}:
+ * If the decorated channel is a {@link FileChannel}, then this method only
+ * acquires the read lock, so many positional reads can run concurrently.
+ * <p>
+ * Scattering reads and gathering writes acquire the lock only once for all
+ * buffers.
+ * However, for instances of subclasses, they call {@link #read(ByteBuffer)}
+ * or {@link #write(ByteBuffer)} for each buffer instead, so they cannot
+ * bypass any override of these methods.
+ * <p>
+ * This channel is not
+ * {@linkplain DecoratingSeekableChannel#isTransparent() transparent}, so bulk
+ * transfers like {@link Streams#transfer(Source, Sink)} cannot bypass its
+ * lock.
  *
  * @author Christian Schlichtherle
  */
 public class LockSeekableChannel extends DecoratingSeekableChannel {
 
-    /** The lock on which this object synchronizes. */
-    private final Lock lock;
+    /** The lock on which this object synchronizes queries. */
+    private final Lock readLock;
+
+    /** The lock on which this object synchronizes all other operations. */
+    private final Lock writeLock;
 
     /**
      * Constructs a new lock seekable channel.
@@ -30,88 +59,185 @@ public class LockSeekableChannel extends DecoratingSeekableChannel {
      */
     public LockSeekableChannel(final Lock lock, final SeekableByteChannel channel) {
         super(channel);
-        this.lock = Objects.requireNonNull(lock);
+        this.readLock = this.writeLock = Objects.requireNonNull(lock);
+    }
+
+    /**
+     * Constructs a new lock seekable channel which uses the read lock of the
+     * given read-write lock for queries and its write lock for all other
+     * operations.
+     * Closing this channel will close the given channel.
+     *
+     * @param lock the read-write lock to use for synchronization.
+     * @param channel the channel to decorate.
+     */
+    public LockSeekableChannel(
+            final ReadWriteLock lock,
+            final SeekableByteChannel channel) {
+        super(channel);
+        this.readLock = Objects.requireNonNull(lock.readLock());
+        this.writeLock = Objects.requireNonNull(lock.writeLock());
     }
 
     @Override
     public boolean isOpen() {
-        lock.lock();
+        readLock.lock();
         try {
             return channel.isOpen();
         } finally {
-            lock.unlock();
+            readLock.unlock();
         }
     }
 
     @Override
     public int read(ByteBuffer dst) throws IOException {
-        lock.lock();
+        writeLock.lock();
         try {
             return channel.read(dst);
         } finally {
-            lock.unlock();
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length)
+    throws IOException {
+        if (!isVectored())
+            return super.read(dsts, offset, length);
+        writeLock.lock();
+        try {
+            return scatter(dsts, offset, length);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reads a sequence of bytes from the decorated channel into the given
+     * buffer, starting at the given position.
+     * This method does not modify the file pointer of the decorated channel.
+     * If the decorated channel is a {@link FileChannel}, then this method
+     * uses {@link FileChannel#read(ByteBuffer, long)} while holding the read
+     * lock.
+     * Otherwise, it positions the decorated channel, reads it and restores
+     * its file pointer while holding the write lock.
+     *
+     * @param  dst the buffer into which bytes are to be transferred.
+     * @param  position the position at which the transfer is to begin.
+     * @return The number of bytes read, possibly zero, or {@code -1} if the
+     *         given position is greater than or equal to the size of the
+     *         decorated channel.
+     * @throws IOException on any I/O error.
+     */
+    public int read(final ByteBuffer dst, final long position)
+    throws IOException {
+        if (0 > position)
+            throw new IllegalArgumentException();
+        if (channel instanceof FileChannel) {
+            readLock.lock();
+            try {
+                return ((FileChannel) channel).read(dst, position);
+            } finally {
+                readLock.unlock();
+            }
+        } else {
+            writeLock.lock();
+            try {
+                final long pos = channel.position();
+                channel.position(position);
+                try {
+                    return channel.read(dst);
+                } finally {
+                    channel.position(pos);
+                }
+            } finally {
+                writeLock.unlock();
+            }
         }
     }
 
     @Override
     public int write(ByteBuffer src) throws IOException {
-        lock.lock();
+        writeLock.lock();
         try {
             return channel.write(src);
         } finally {
-            lock.unlock();
+            writeLock.unlock();
         }
     }
 
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length)
+    throws IOException {
+        if (!isVectored())
+            return super.write(srcs, offset, length);
+        writeLock.lock();
+        try {
+            return gather(srcs, offset, length);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether or not the vectored methods may forward the call to
+     * the decorated channel.
+     * This is only the case if they cannot bypass any override of the single
+     * buffer methods in a subclass.
+     */
+    private boolean isVectored() {
+        return LockSeekableChannel.class == getClass();
+    }
+
     @Override
     public long position() throws IOException {
-        lock.lock();
+        readLock.lock();
         try {
             return channel.position();
         } finally {
-            lock.unlock();
+            readLock.unlock();
         }
     }
 
     @Override
     public SeekableByteChannel position(long pos) throws IOException {
-        lock.lock();
+        writeLock.lock();
         try { 
             channel.position(pos);
         } finally {
-            lock.unlock();
+            writeLock.unlock();
         }
         return this;
     }
 
     @Override
     public long size() throws IOException {
-        lock.lock();
+        readLock.lock();
         try {
             return channel.size();
         } finally {
-            lock.unlock();
+            readLock.unlock();
         }
     }
 
     @Override
     public SeekableByteChannel truncate(long size) throws IOException {
-        lock.lock();
+        writeLock.lock();
         try {
             channel.truncate(size);
         } finally {
-            lock.unlock();
+            writeLock.unlock();
         }
         return this;
     }
 
     @Override
     public void close() throws IOException {
-        lock.lock();
+        writeLock.lock();
         try {
             channel.close();
         } finally {
-            lock.unlock();
+            writeLock.unlock();
         }
     }
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+
+import static java.lang.Math.min;
+
+/**
+ * Provides read-only access to its decorated file channel by mapping it into
+ * memory.
+ * Note that this channel maintains its own virtual file pointer.
+ * <p>
+ * The file gets mapped in windows of a configurable size which start at
+ * multiples of the window size, so files larger than two gigabytes are
+ * supported.
+ * Reads get served straight from the current window, which saves the system
+ * call and the copy per page compared to a {@link BufferedReadOnlyChannel}.
+ * When reading outside of the current window, it gets unmapped and the next
+ * window gets mapped.
+ * <p>
+ * Closing this channel unmaps the current window immediately rather than
+ * waiting for the garbage collector to do this, so the file can get deleted
+ * or replaced right after closing this channel - even on Windows.
+ * This uses {@link DirectBuffers#release}, which uses an internal API of the
+ * JVM.
+ * If this API is unavailable, then the window gets unmapped by the garbage
+ * collector as usual.
+ * Because accessing an unmapped window would crash the JVM, this channel
+ * never exposes its windows and it must not get closed by one thread while
+ * another thread is reading it.
+ *
+ * @author Christian Schlichtherle
+ */
+public final class MappedReadOnlyChannel extends ReadOnlyChannel {
+
+    /** The default window size, which is {@value} bytes. */
+    public static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final long INVALID = Long.MIN_VALUE;
+
+    /** The size of each window. */
+    private final int windowSize;
+
+    /** The virtual file pointer. */
+    private long pos;
+
+    /**
+     * The position in the decorated channel where the window starts.
+     * This is always a multiple of the window size.
+     */
+    private long windowStart = INVALID;
+
+    /** The current window or {@code null} if unmapped. */
+    private MappedByteBuffer window;
+
+    /**
+     * Constructs a new mapped read-only channel.
+     * Closing this channel will close the given channel.
+     *
+     * @param channel the file channel to decorate.
+     */
+    public MappedReadOnlyChannel(FileChannel channel) {
+        this(channel, WINDOW_SIZE);
+    }
+
+    /**
+     * Constructs a new mapped read-only channel.
+     * Closing this channel will close the given channel.
+     *
+     * @param channel the file channel to decorate.
+     * @param windowSize the maximum size of each mapped window.
+     */
+    public MappedReadOnlyChannel(
+            final FileChannel channel,
+            final int windowSize) {
+        super(channel);
+        if (0 >= windowSize)
+            throw new IllegalArgumentException("Window size not positive: " + windowSize);
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    public int read(final ByteBuffer dst) throws IOException {
+        // Check no-op first for compatibility with FileChannel.
+        final int remaining = dst.remaining();
+        if (remaining <= 0)
+            return 0;
+
+        // Check is open.
+        checkOpen();
+
+        // Read of window data.
+        int total = 0; // amount of data copied dst
+        while (total < remaining) {
+            final ByteBuffer window = positionWindow();
+            if (null == window)
+                break; // EOF
+            final int windowPos = (int) (pos - windowStart);
+            final int length = min(remaining - total,
+                    window.limit() - windowPos);
+            assert length > 0;
+            final ByteBuffer slice = window.duplicate();
+            slice.limit(windowPos + length).position(windowPos);
+            dst.put(slice);
+            total += length;
+            pos += length;
+        }
+        return 0 < total ? total : -1;
+    }
+
+    @Override
+    public long position() throws IOException {
+        checkOpen();
+        return pos;
+    }
+
+    @Override
+    public SeekableByteChannel position(final long pos) throws IOException {
+        checkOpen();
+        if (0 > pos)
+            throw new IllegalArgumentException();
+        this.pos = pos;
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        unmap();
+        channel.close();
+    }
+
+    @Override
+    protected boolean isTransparent() { return true; }
+
+    /**
+     * Maps the window which contains the data referenced by the virtual file
+     * pointer.
+     *
+     * @return The current window or {@code null} if the virtual file pointer
+     *         is at or beyond the end of the file.
+     */
+    private MappedByteBuffer positionWindow() throws IOException {
+        final long pos = this.pos;
+        final MappedByteBuffer window = this.window;
+        final long windowStart = this.windowStart;
+        if (null != window
+                && windowStart <= pos
+                && pos < windowStart + window.limit())
+            return window;
+
+        // Round down to multiple of window size.
+        final long start = pos / windowSize * windowSize;
+        final long size = channel.size();
+        if (pos >= size)
+            return null;
+        unmap();
+        final MappedByteBuffer mapped = ((FileChannel) channel).map(
+                FileChannel.MapMode.READ_ONLY,
+                start, min(windowSize, size - start));
+        this.windowStart = start;
+        return this.window = mapped;
+    }
+
+    /** Unmaps the current window, if any. */
+    private void unmap() {
+        final MappedByteBuffer window = this.window;
+        if (null == window)
+            return;
+        this.window = null;
+        this.windowStart = INVALID;
+        DirectBuffers.release(window);
+    }
+}
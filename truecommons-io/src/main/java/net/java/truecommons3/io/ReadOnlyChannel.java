@@ -38,6 +38,13 @@ public class ReadOnlyChannel extends DecoratingSeekableChannel {
         throw new NonWritableChannelException();
     }
 
+    /** @throws NonWritableChannelException always. */
+    @Override
+    public final long write(ByteBuffer[] srcs, int offset, int length)
+    throws NonWritableChannelException {
+        throw new NonWritableChannelException();
+    }
+
     /** @throws NonWritableChannelException always. */
     @Override
     public final SeekableByteChannel truncate(long size)
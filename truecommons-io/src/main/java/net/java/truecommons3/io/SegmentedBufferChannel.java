@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Adapts a list of fixed-size {@linkplain ByteBuffer byte buffer} segments to
+ * a seekable byte channel.
+ * Unlike a {@link ByteBufferChannel}, this channel never copies its contents
+ * when growing:
+ * When writing past the last segment, a new segment gets allocated and
+ * appended to the list.
+ * This avoids the cost of copying the contents and the memory peak of up to
+ * three times the size of the contents for large data.
+ * <p>
+ * The position of the channel can be set beyond the size of its contents.
+ * When writing at such a position, the gap gets filled with zeros.
+ * The size of the contents is limited by the number of segments, which is
+ * {@link Integer#MAX_VALUE}, so it can exceed two gigabytes.
+ * <p>
+ * When closing this channel, clients should call {@link #getSegments()} to
+ * obtain the segments with the contents.
+ * <p>
+ * Subclasses may override {@link #allocate(int)} and
+ * {@link #recycle(ByteBuffer)} in order to take the segments from a pool and
+ * return them to it.
+ *
+ * @author Christian Schlichtherle
+ */
+public class SegmentedBufferChannel
+extends AbstractSeekableChannel
+implements ScatteringByteChannel, GatheringByteChannel {
+
+    private final int segmentSize;
+    private final boolean direct;
+    private final boolean readOnly;
+
+    /**
+     * The segments.
+     * Each segment has a capacity of at least {@link #segmentSize} bytes.
+     * Only the first {@link #segmentSize} bytes of each segment get used.
+     */
+    private final List<ByteBuffer> segments;
+
+    /** The size of the contents. */
+    private long size;
+
+    /** The position of this channel. */
+    private long position;
+
+    private boolean closed;
+
+    /**
+     * Constructs a new, empty segmented buffer channel.
+     *
+     * @param segmentSize the size of each segment.
+     * @param direct whether or not to allocate direct byte buffers for the
+     *        segments.
+     */
+    public SegmentedBufferChannel(final int segmentSize, final boolean direct) {
+        if (0 >= segmentSize)
+            throw new IllegalArgumentException("Segment size not positive: " + segmentSize);
+        this.segmentSize = segmentSize;
+        this.direct = direct;
+        this.readOnly = false;
+        this.segments = new ArrayList<>();
+    }
+
+    /**
+     * Constructs a new read-only segmented buffer channel which shares its
+     * contents with the given list of segments.
+     * The contents of each segment are the bytes between its position and its
+     * limit.
+     * The contents of all segments except the last one must have the same
+     * size.
+     * A {@linkplain ByteBuffer#slice() slice} is made of each segment in order
+     * to protect this channel from concurrent modifications of the given
+     * segments' properties.
+     *
+     * @param segments the segments with the contents to share with this
+     *        channel.
+     */
+    public SegmentedBufferChannel(final List<ByteBuffer> segments) {
+        final int count = segments.size();
+        final List<ByteBuffer> slices = new ArrayList<>(count);
+        int segmentSize = 1;
+        long size = 0;
+        for (int i = 0; i < count; i++) {
+            final ByteBuffer slice = segments.get(i).slice();
+            final int remaining = slice.remaining();
+            if (0 == i)
+                segmentSize = Math.max(1, remaining);
+            else if (segmentSize != slices.get(i - 1).remaining()
+                    || segmentSize < remaining)
+                throw new IllegalArgumentException("Segment sizes differ at index " + i + ".");
+            slices.add(slice);
+            size += remaining;
+        }
+        this.segmentSize = segmentSize;
+        this.direct = false;
+        this.readOnly = true;
+        this.segments = slices;
+        this.size = size;
+    }
+
+    /**
+     * Returns the segments with the contents of this channel.
+     * The returned list is unmodifiable.
+     * Each segment is a {@linkplain ByteBuffer#duplicate() duplicate} with a
+     * position of zero and a limit which is set to the number of bytes of the
+     * contents in this segment, so all segments except the last one have a
+     * limit equal to the segment size.
+     *
+     * @return The segments with the contents of this channel.
+     */
+    public List<ByteBuffer> getSegments() {
+        final int count = count(size);
+        final List<ByteBuffer> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int limit = (int) Math.min(segmentSize,
+                    size - (long) i * segmentSize);
+            final ByteBuffer segment = this.segments.get(i).duplicate();
+            segment.position(0).limit(limit);
+            segments.add(segment);
+        }
+        return Collections.unmodifiableList(segments);
+    }
+
+    /** Returns the number of segments required for the given size. */
+    private int count(final long size) {
+        return (int) ((size + segmentSize - 1) / segmentSize);
+    }
+
+    @Override
+    public int read(final ByteBuffer dst) throws IOException {
+        checkOpen();
+        if (!dst.hasRemaining())
+            return 0;
+        long position = this.position;
+        final long size = this.size;
+        if (position >= size)
+            return -1;
+        final int segmentSize = this.segmentSize;
+        int total = 0;
+        while (dst.hasRemaining() && position < size) {
+            final ByteBuffer segment = segments.get((int) (position / segmentSize));
+            final int offset = (int) (position % segmentSize);
+            final int length = (int) Math.min(
+                    Math.min(dst.remaining(), segmentSize - offset),
+                    size - position);
+            segment.limit(offset + length).position(offset);
+            dst.put(segment);
+            position += length;
+            total += length;
+        }
+        this.position = position;
+        return total;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Override
+    public long read(final ByteBuffer[] dsts, final int offset, final int length)
+    throws IOException {
+        checkBounds(dsts.length, offset, length);
+        checkOpen();
+        long total = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            final int read = read(dsts[i]);
+            if (0 > read)
+                return 0 == total ? -1 : total;
+            total += read;
+        }
+        return total;
+    }
+
+    @Override
+    public int write(final ByteBuffer src) throws IOException {
+        checkOpen();
+        if (readOnly)
+            throw new NonWritableChannelException();
+        final int remaining = src.remaining();
+        if (0 >= remaining)
+            return 0;
+        long position = this.position;
+        if (position > size)
+            fill(size, position);
+        final int segmentSize = this.segmentSize;
+        final int srcLimit = src.limit();
+        try {
+            while (src.hasRemaining()) {
+                final ByteBuffer segment = segment((int) (position / segmentSize));
+                final int offset = (int) (position % segmentSize);
+                final int length = Math.min(src.remaining(), segmentSize - offset);
+                src.limit(src.position() + length);
+                segment.limit(offset + length).position(offset);
+                segment.put(src);
+                src.limit(srcLimit);
+                position += length;
+            }
+        } finally {
+            src.limit(srcLimit);
+        }
+        this.position = position;
+        if (position > size)
+            size = position;
+        return remaining;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    @Override
+    public long write(final ByteBuffer[] srcs, final int offset, final int length)
+    throws IOException {
+        checkBounds(srcs.length, offset, length);
+        checkOpen();
+        long total = 0;
+        for (int i = offset, end = offset + length; i < end; i++)
+            total += write(srcs[i]);
+        return total;
+    }
+
+    /** Fills the contents between the given positions with zeros. */
+    private void fill(long from, final long to) {
+        final int segmentSize = this.segmentSize;
+        while (from < to) {
+            final ByteBuffer segment = segment((int) (from / segmentSize));
+            final int offset = (int) (from % segmentSize);
+            final int length = (int) Math.min(segmentSize - offset, to - from);
+            for (int i = offset, end = offset + length; i < end; i++)
+                segment.put(i, (byte) 0);
+            from += length;
+        }
+        size = to;
+    }
+
+    /** Returns the segment with the given index, allocating it if required. */
+    private ByteBuffer segment(final int index) {
+        final List<ByteBuffer> segments = this.segments;
+        while (segments.size() <= index) {
+            final ByteBuffer segment = allocate(segmentSize);
+            if (segment.capacity() < segmentSize)
+                throw new IllegalStateException("Segment too small: " + segment.capacity());
+            segments.add(segment);
+        }
+        return segments.get(index);
+    }
+
+    private static void checkBounds(
+            final int arrayLength,
+            final int offset,
+            final int length) {
+        if (0 > offset || 0 > length || arrayLength - length < offset)
+            throw new IndexOutOfBoundsException();
+    }
+
+    /**
+     * Allocates a new segment when writing past the last segment.
+     * The implementation in the class {@link SegmentedBufferChannel}
+     * allocates a new byte buffer with exactly the given capacity.
+     *
+     * @param  capacity the minimum capacity of the new segment.
+     * @return A new segment with a capacity of at least {@code capacity}
+     *         bytes.
+     */
+    protected ByteBuffer allocate(int capacity) {
+        return direct
+                ? ByteBuffer.allocateDirect(capacity)
+                : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Recycles a segment which has been dropped when
+     * {@linkplain #truncate(long) truncating} this channel.
+     * The implementation in the class {@link SegmentedBufferChannel} does
+     * nothing.
+     *
+     * @param segment the dropped segment.
+     */
+    protected void recycle(ByteBuffer segment) { }
+
+    @Override
+    public long position() throws IOException {
+        checkOpen();
+        return position;
+    }
+
+    @Override
+    public SegmentedBufferChannel position(long newPosition) throws IOException {
+        checkOpen();
+        if (0 > newPosition)
+            throw new IllegalArgumentException();
+        this.position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        checkOpen();
+        return size;
+    }
+
+    @Override
+    public SegmentedBufferChannel truncate(final long size) throws IOException {
+        checkOpen();
+        if (readOnly)
+            throw new NonWritableChannelException();
+        if (0 > size)
+            throw new IllegalArgumentException();
+        if (this.size > size) {
+            this.size = size;
+            final List<ByteBuffer> segments = this.segments;
+            for (int i = segments.size(), count = count(size); --i >= count; )
+                recycle(segments.remove(i));
+        }
+        if (position > size)
+            position = size;
+        return this;
+    }
+
+    @Override
+    public boolean isOpen() { return !closed; }
+
+    @Override
+    public void close() { closed = true; }
+}
@@ -9,13 +9,18 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Deque;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Static utility methods for {@link InputStream}s and {@link OutputStream}s.
@@ -26,22 +31,93 @@ import java.util.concurrent.locks.ReentrantLock;
 public class Streams {
 
     /**
-     * The size of the FIFO used for exchanging I/O buffers between a reader
-     * thread and a writer thread.
+     * The default size of the FIFO used for exchanging I/O buffers between a
+     * reader thread and a writer thread.
      * A minimum of two elements is required.
      * The actual number is optimized to compensate for oscillating I/O
      * bandwidths like e.g. with network shares.
      */
     static final int FIFO_SIZE = 4;
 
-    /** The buffer size used for reading and writing, which is {@value}. */
+    /**
+     * The default buffer size used for reading and writing, which is
+     * {@value}.
+     *
+     * @see CopyOptions#DEFAULT
+     */
     public static final int BUFFER_SIZE = 8 * 1024;
 
-    private static final ExecutorService executor
-            = Executors.newCachedThreadPool(new ReaderThreadFactory());
+    /**
+     * The default maximum number of bytes which get copied in the current
+     * thread alone, which is {@value}.
+     *
+     * @see CopyOptions#DEFAULT
+     */
+    public static final int SAME_THREAD_THRESHOLD = 64 * 1024;
+
+    /**
+     * The maximum number of threads in the default executor for reader tasks
+     * if it uses platform threads.
+     * If all of these threads are busy, then a copy gets run by the writer
+     * thread alone.
+     */
+    static final int MAX_READERS
+            = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The key of the system property which forces the default executor for
+     * reader tasks to use platform threads even if virtual threads are
+     * available.
+     */
+    private static final String PLATFORM_THREADS_PROPERTY_KEY
+            = Streams.class.getName() + ".platformThreads";
+
+    /**
+     * The default executor for reader tasks.
+     * If the JVM supports virtual threads, then this executor starts a new
+     * virtual thread for each reader task, so there is no practical limit for
+     * the number of concurrent copies.
+     * Otherwise, this executor uses a bounded pool of {@link ReaderThread}s.
+     */
+    static final ExecutorService executor = newExecutor();
+
+    static ExecutorService newExecutor() {
+        if (!Boolean.getBoolean(PLATFORM_THREADS_PROPERTY_KEY)) {
+            try {
+                // Requires JSE 21 or a preview of it.
+                return (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                // Virtual threads are unavailable, so fall through.
+            }
+        }
+        return new ThreadPoolExecutor(
+                0, MAX_READERS,
+                60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                new ReaderThreadFactory());
+    }
+
+    private static final CopyStatistics statistics = new CopyStatistics();
+
+    /** A size hint for sources of unknown size. */
+    private static final SizeHint UNKNOWN_SIZE = new SizeHint() {
+        @Override
+        public long size() { return -1; }
+    };
 
     private Streams() { }
 
+    /**
+     * Returns the statistics about the copies run by this class.
+     * The statistics include all copies, no matter which
+     * {@linkplain CopyOptions#getExecutor() executor} they use.
+     *
+     * @return The statistics about the copies run by this class.
+     */
+    public static CopyStatistics getStatistics() { return statistics; }
+
     /**
      * Copies the data from the given source to the given sink.
      * <p>
@@ -53,14 +129,40 @@ public class Streams {
      * @param source the source for reading the data from.
      * @param sink the sink for writing the data to.
      */
+    public static void copy(Source source, Sink sink) throws IOException {
+        copy(source, sink, CopyOptions.DEFAULT);
+    }
+
+    /**
+     * Copies the data from the given source to the given sink using the
+     * given options.
+     *
+     * @param source the source for reading the data from.
+     * @param sink the sink for writing the data to.
+     * @param options the options for copying the data.
+     * @see   #copy(Source, Sink)
+     */
+    public static void copy(
+            Source source,
+            Sink sink,
+            CopyOptions options)
+    throws IOException {
+        copy(source, sink, options, UNKNOWN_SIZE);
+    }
+
     @SuppressWarnings("ThrowFromFinallyBlock")
-    public static void copy(final Source source, final Sink sink)
+    private static void copy(
+            final Source source,
+            final Sink sink,
+            final CopyOptions options,
+            final SizeHint size)
     throws IOException {
+        Objects.requireNonNull(options);
         try (InputStream in = source.stream();
              OutputStream out = sink.stream()) {
             Throwable t1 = null;
             try {
-                cat(in, out);
+                cat(in, out, options, size);
             } catch (final Throwable t2) {
                 t1 = t2;
                 throw t2;
@@ -81,6 +183,211 @@ public class Streams {
         }
     }
 
+    /**
+     * Copies the data from the given source to the given sink, preferring
+     * their seekable byte channels over their streams.
+     * <p>
+     * If the source or the sink provides a {@link FileChannel}, either
+     * directly or decorated by a chain of
+     * {@linkplain DecoratingSeekableChannel#isTransparent() transparent}
+     * decorating seekable channels, then this method uses
+     * {@link FileChannel#transferTo} or {@link FileChannel#transferFrom} so
+     * that the operating system can copy the data without passing it through
+     * the Java heap.
+     * Otherwise, this method falls back to {@link #cat cat}enate the channels
+     * using pooled direct byte buffers instead of heap byte arrays or, if the
+     * source does not support channels, to {@link #copy(Source, Sink)}.
+     *
+     * @param source the source for reading the data from.
+     * @param sink the sink for writing the data to.
+     */
+    public static void transfer(Source source, Sink sink) throws IOException {
+        transfer(source, sink, CopyOptions.DEFAULT);
+    }
+
+    /**
+     * Copies the data from the given source to the given sink using the
+     * given options, preferring their seekable byte channels over their
+     * streams.
+     * The options apply only if this method falls back to
+     * {@link #cat cat}enate the data.
+     *
+     * @param source the source for reading the data from.
+     * @param sink the sink for writing the data to.
+     * @param options the options for copying the data.
+     * @see   #transfer(Source, Sink)
+     */
+    public static void transfer(
+            Source source,
+            Sink sink,
+            CopyOptions options)
+    throws IOException {
+        transfer(source, sink, options, UNKNOWN_SIZE);
+    }
+
+    /**
+     * Copies the data from the given source to the given sink using the
+     * given options, preferring their seekable byte channels over their
+     * streams.
+     * The size is just a hint:
+     * If it doesn't exceed the
+     * {@linkplain CopyOptions#getSameThreadThreshold() same thread threshold},
+     * then the data gets copied in the current thread alone.
+     * In any case, all data gets copied until the end of the source.
+     * The size hint gets queried at most once and only if the source does not
+     * support channels, because the size of a channel is known anyway.
+     *
+     * @param source the source for reading the data from.
+     * @param sink the sink for writing the data to.
+     * @param options the options for copying the data.
+     * @param size the hint for the number of bytes provided by the source.
+     * @see   #transfer(Source, Sink)
+     */
+    @SuppressWarnings("ThrowFromFinallyBlock")
+    public static void transfer(
+            final Source source,
+            final Sink sink,
+            final CopyOptions options,
+            final SizeHint size)
+    throws IOException {
+        Objects.requireNonNull(options);
+        final SeekableByteChannel input;
+        try {
+            input = source.channel();
+        } catch (final UnsupportedOperationException ex) {
+            copy(source, sink, options, size);
+            return;
+        }
+        try (SeekableByteChannel in = input;
+             WritableByteChannel out = channel(sink)) {
+            Throwable t1 = null;
+            try {
+                transfer(in, out, options);
+            } catch (final Throwable t2) {
+                t1 = t2;
+                throw t2;
+            } finally {
+                // Help the resource management in TrueVFS by closing the input
+                // channel first - see copy(Source, Sink).
+                try {
+                    in.close();
+                } catch (final Throwable t2) {
+                    if (null == t1) throw t2;
+                    t1.addSuppressed(t2);
+                }
+            }
+        }
+    }
+
+    private static WritableByteChannel channel(final Sink sink)
+    throws IOException {
+        try {
+            return sink.channel();
+        } catch (final UnsupportedOperationException ex) {
+            return Channels.newChannel(sink.stream());
+        }
+    }
+
+    /**
+     * Copies the data from the given seekable byte channel to the given
+     * writable byte channel using the given options <em>without</em> closing
+     * them.
+     * Upon return, the position of the input channel is at its end and the
+     * position of the output channel, if any, is after the last byte written.
+     */
+    static void transfer(
+            final SeekableByteChannel in,
+            final WritableByteChannel out,
+            final CopyOptions options)
+    throws IOException {
+        final FileChannel fin = fileChannel(in);
+        final FileChannel fout = out instanceof SeekableByteChannel
+                ? fileChannel((SeekableByteChannel) out)
+                : null;
+        if (null != fin) {
+            final long position = in.position();
+            final SeekableByteChannel sout = null != fout
+                    ? (SeekableByteChannel) out
+                    : null;
+            final long outPosition = null != sout ? sout.position() : 0;
+            final long transferred = transferTo(fin, position,
+                    in.size() - position,
+                    null != fout ? fout : out);
+            in.position(position + transferred);
+            if (null != sout)
+                sout.position(outPosition + transferred);
+        } else if (null != fout) {
+            final SeekableByteChannel sout = (SeekableByteChannel) out;
+            final long position = sout.position();
+            final long transferred = transferFrom(in,
+                    in.size() - in.position(), fout, position);
+            sout.position(position + transferred);
+        } else {
+            cat(in, out, options);
+        }
+    }
+
+    private static long transferTo(
+            final FileChannel in,
+            long position,
+            long count,
+            final WritableByteChannel out)
+    throws IOException {
+        long total = 0;
+        while (0 < count) {
+            final long transferred = in.transferTo(position, count, out);
+            if (0 >= transferred)
+                break; // the file has been truncated concurrently
+            position += transferred;
+            count -= transferred;
+            total += transferred;
+        }
+        return total;
+    }
+
+    private static long transferFrom(
+            final ReadableByteChannel in,
+            long count,
+            final FileChannel out,
+            long position)
+    throws IOException {
+        long total = 0;
+        while (0 < count) {
+            final long transferred = out.transferFrom(in, position, count);
+            if (0 >= transferred)
+                break; // the input has been truncated concurrently
+            position += transferred;
+            count -= transferred;
+            total += transferred;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the file channel which is decorated by the given channel via a
+     * chain of transparent decorating seekable channels or {@code null} if
+     * there is no such file channel.
+     */
+    private static FileChannel fileChannel(SeekableByteChannel channel) {
+        channel = unwrap(channel);
+        return channel instanceof FileChannel ? (FileChannel) channel : null;
+    }
+
+    /**
+     * Returns the innermost channel which is decorated by the given channel
+     * via a chain of transparent decorating seekable channels.
+     */
+    private static SeekableByteChannel unwrap(SeekableByteChannel channel) {
+        while (channel instanceof DecoratingSeekableChannel) {
+            final DecoratingSeekableChannel dsc
+                    = (DecoratingSeekableChannel) channel;
+            if (!dsc.isTransparent())
+                break;
+            channel = dsc.channel;
+        }
+        return channel;
+    }
+
     /**
      * Copies the data from the given input stream to the given output stream
      * and <em>always</em> closes <em>both</em> streams - even if an exception
@@ -146,41 +453,149 @@ public class Streams {
      * @param out the output stream.
      *           This method never closes this stream.
      */
-    public static void cat(final InputStream in, final OutputStream out)
+    public static void cat(InputStream in, OutputStream out)
+    throws IOException {
+        cat(in, out, CopyOptions.DEFAULT);
+    }
+
+    /**
+     * Copies the data from the given input stream to the given output stream
+     * using the given options <em>without</em> closing them.
+     *
+     * @param in the input stream.
+     *           This method never closes this stream.
+     * @param out the output stream.
+     *           This method never closes this stream.
+     * @param options the options for copying the data.
+     * @see   #cat(InputStream, OutputStream)
+     */
+    public static void cat(
+            InputStream in,
+            OutputStream out,
+            CopyOptions options)
+    throws IOException {
+        cat(in, out, options, UNKNOWN_SIZE);
+    }
+
+    /**
+     * Copies the data from the given input stream to the given output stream
+     * using the given options <em>without</em> closing them.
+     * If the input is backed by a {@link ByteBufferChannel} or a
+     * {@link SegmentedBufferChannel} or its size is
+     * known not to exceed the
+     * {@linkplain CopyOptions#getSameThreadThreshold() same thread threshold},
+     * then the data gets copied in the current thread alone because handing
+     * it over to a reader thread would cost more than the copy itself.
+     *
+     * @param size the hint for the number of bytes provided by the input
+     *        stream.
+     */
+    private static void cat(
+            final InputStream in,
+            final OutputStream out,
+            final CopyOptions options,
+            final SizeHint size)
     throws IOException {
         Objects.requireNonNull(in);
         Objects.requireNonNull(out);
+        cat(new StreamInput(in), new StreamOutput(out), options,
+                sameThread(in, options, size), false);
+    }
+
+    /**
+     * Copies the data from the given seekable byte channel to the given
+     * writable byte channel using the given options <em>without</em> closing
+     * them.
+     * Unlike {@link #cat(InputStream, OutputStream, CopyOptions, long)}, this
+     * method uses pooled direct byte buffers, so the data does not need to get
+     * copied to the Java heap and back again.
+     */
+    private static void cat(
+            final SeekableByteChannel in,
+            final WritableByteChannel out,
+            final CopyOptions options)
+    throws IOException {
+        cat(new ChannelInput(in), new ChannelOutput(out), options,
+                sameThread(in, options), true);
+    }
+
+    /**
+     * Copies the data from the given input to the given output using the
+     * given options.
+     *
+     * @param sameThread whether or not the data should get copied in the
+     *        current thread alone.
+     * @param direct whether or not to use direct byte buffers.
+     */
+    private static void cat(
+            final Input in,
+            final Output out,
+            final CopyOptions options,
+            final boolean sameThread,
+            final boolean direct)
+    throws IOException {
+        final long start = System.nanoTime();
+        if (sameThread) {
+            final Buffer[] buffers
+                    = Buffer.allocate(1, options.getBufferSize(), direct);
+            long total = 0;
+            try {
+                statistics.sameThreadCopy();
+                total = cat(in, out, buffers[0]);
+            } finally {
+                Buffer.release(buffers);
+                statistics.copied(total, System.nanoTime() - start);
+            }
+            return;
+        }
 
         // We will use a FIFO to exchange byte buffers between a pooled reader
         // thread and the current writer thread.
         // The pooled reader thread will fill the buffers with data from the
         // input and the current thread will write the filled buffers to the
         // output.
-        // The FIFO is simply implemented as a cached array or byte buffers
-        // with an offset and a size which is used like a ring buffer.
+        // The FIFO is implemented as a lock-free ring over a cached array of
+        // byte buffers.
 
-        final Lock lock = new ReentrantLock();
-        final Condition signal = lock.newCondition();
-        final Buffer[] buffers = Buffer.allocate();
+        final ChunkSize chunkSize = new ChunkSize(options);
+        final Buffer[] buffers
+                = Buffer.allocate(options.getFifoSize(), chunkSize.get(), direct);
+        final Fifo<Buffer> fifo = new Fifo<>(buffers);
 
         /*
          * The task that cycles through the buffers in order to fill them
          * with input.
          */
         final class ReaderTask implements Runnable {
-            /** The index of the next buffer to be written. */
-            int off;
-
-            /** The number of buffers filled with data to be written. */
-            int size;
-
             /** The Throwable that happened in this task, if any. */
             volatile Throwable exception;
 
+            /**
+             * Whether or not this task has been dequeued, either by running
+             * it or by cancelling it before it started.
+             */
+            final AtomicBoolean dequeued = new AtomicBoolean();
+
+            /**
+             * Claims the dequeueing of this task.
+             * Returns {@code true} for the first call only, so the statistics
+             * count it exactly once.
+             */
+            boolean dequeue() { return dequeued.compareAndSet(false, true); }
+
             @Override
             public void run() {
-                final int buffersLength = buffers.length;
+                if (!dequeue())
+                    return; // cancelled before started
+                statistics.readerStarted();
+                try {
+                    read();
+                } finally {
+                    statistics.readerStopped();
+                }
+            }
 
+            void read() {
                 // The writer executor interrupts this executor to signal
                 // that it cannot handle more input because there has been
                 // an IOException during writing.
@@ -189,18 +604,10 @@ public class Streams {
                 do {
                     // Wait until a buffer is available.
                     final Buffer buffer;
-                    lock.lock();
                     try {
-                        while (size >= buffersLength) {
-                            try {
-                                signal.await();
-                            } catch (InterruptedException cancel) {
-                                return;
-                            }
-                        }
-                        buffer = buffers[(off + size) % buffersLength];
-                    } finally {
-                        lock.unlock();
+                        buffer = fifo.awaitPut();
+                    } catch (InterruptedException cancel) {
+                        return;
                     }
 
                     // Fill buffer until end of file or buffer.
@@ -208,52 +615,49 @@ public class Streams {
                     // we do not depend on this as it would be a violation
                     // of InputStream's contract.
                     try {
-                        final byte[] buf = buffer.buf;
-                        read = in.read(buf, 0, buf.length);
+                        final int size = chunkSize.get();
+                        final ByteBuffer buf = buffer.resize(size);
+                        final long start = System.nanoTime();
+                        read = in.read(buf);
+                        chunkSize.update(read, System.nanoTime() - start);
                     } catch (final Throwable ex) {
                         exception = ex;
                         read = -1;
                     }
                     buffer.read = read;
 
-                    // Advance head and signal writer.
-                    lock.lock();
-                    try {
-                        size++;
-                        signal.signal(); // only the writer could be waiting now!
-                    } finally {
-                        lock.unlock();
-                    }
+                    // Advance tail and signal writer.
+                    fifo.put();
                 } while (0 <= read);
             }
         } // ReaderTask
 
+        long total = 0;
         boolean interrupted = false;
         try {
             final ReaderTask reader = new ReaderTask();
-            final Future<?> result = executor.submit(reader);
-
-            // Cache some data for better performance.
-            final int buffersLength = buffers.length;
+            final Future<?> result;
+            statistics.queued();
+            try {
+                result = options.getExecutor().submit(reader);
+            } catch (final RejectedExecutionException saturated) {
+                statistics.dequeued();
+                statistics.sameThreadCopy();
+                total = cat(in, out, buffers[0]);
+                return;
+            }
 
             int write;
             while (true) {
                 // Wait until a buffer is available.
-                final int off;
-                final Buffer buffer;
-                lock.lock();
-                try {
-                    while (0 >= reader.size) {
-                        try {
-                            signal.await();
-                        } catch (InterruptedException interrupt) {
-                            interrupted = true;
-                        }
+                Buffer buffer;
+                while (true) {
+                    try {
+                        buffer = fifo.awaitTake();
+                        break;
+                    } catch (InterruptedException interrupt) {
+                        interrupted = true;
                     }
-                    off = reader.off;
-                    buffer = buffers[off];
-                } finally {
-                    lock.unlock();
                 }
 
                 // Stop on last buffer.
@@ -263,25 +667,21 @@ public class Streams {
 
                 // Process buffer.
                 try {
-                    out.write(buffer.buf, 0, write);
+                    out.write(buffer.buf, write);
                 } catch (final Throwable ex) {
                     try {
                         cancel(result);
                     } catch (final Throwable ex2) {
                         ex.addSuppressed(ex2);
                     }
+                    if (reader.dequeue())
+                        statistics.dequeued();
                     throw ex;
                 }
+                total += write;
 
-                // Advance tail and signal reader.
-                lock.lock();
-                try {
-                    reader.off = (off + 1) % buffersLength;
-                    reader.size--;
-                    signal.signal(); // only the reader could be waiting now!
-                } finally {
-                    lock.unlock();
-                }
+                // Advance head and signal reader.
+                fifo.take();
             }
             out.flush();
 
@@ -297,7 +697,71 @@ public class Streams {
             if (interrupted)
                 Thread.currentThread().interrupt(); // restore
             Buffer.release(buffers);
+            statistics.copied(total, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns {@code true} if and only if the data of the given input stream
+     * should get copied in the current thread alone.
+     */
+    private static boolean sameThread(
+            final InputStream in,
+            final CopyOptions options,
+            final SizeHint hint)
+    throws IOException {
+        if (in instanceof ChannelInputStream)
+            return sameThread(((ChannelInputStream) in).channel, options);
+        final long size = hint.size();
+        return 0 <= size && size <= options.getSameThreadThreshold();
+    }
+
+    /**
+     * Returns {@code true} if and only if the data of the given channel
+     * should get copied in the current thread alone.
+     */
+    private static boolean sameThread(
+            final SeekableByteChannel in,
+            final CopyOptions options)
+    throws IOException {
+        final SeekableByteChannel channel = unwrap(in);
+        if (channel instanceof ByteBufferChannel
+                || channel instanceof SegmentedBufferChannel)
+            return true;
+        return in.size() - in.position() <= options.getSameThreadThreshold();
+    }
+
+    /**
+     * Copies the data from the given input to the given output in the current
+     * thread using the given buffer.
+     * This method has the same semantics as
+     * {@link #cat(InputStream, OutputStream, CopyOptions)}, but gets used if
+     * no reader thread is available or the data is small.
+     *
+     * @return The number of bytes written.
+     */
+    private static long cat(
+            final Input in,
+            final Output out,
+            final Buffer buffer)
+    throws IOException {
+        final int size = buffer.buf.capacity();
+        long total = 0;
+        while (true) {
+            final int read;
+            try {
+                read = in.read(buffer.resize(size));
+            } catch (final Throwable ex) {
+                out.flush();
+                throw ex;
+            }
+            if (0 > read)
+                break;
+            out.write(buffer.buf, read);
+            total += read;
         }
+        out.flush();
+        return total;
     }
 
     /**
@@ -329,11 +793,128 @@ public class Streams {
         }
     }
 
+    /**
+     * Computes the size of the chunks to read from the input.
+     * Unless the copy options are adaptive, this is just the buffer size.
+     * Otherwise, the chunk size starts small and gets doubled whenever a read
+     * fills an entire chunk without a significant drop of the throughput.
+     * This object must only get used by the reader thread, except for the
+     * initial call to {@link #get()}.
+     */
+    private static final class ChunkSize {
+
+        /** The maximum chunk size. */
+        int max;
+
+        /** The current chunk size. */
+        int size;
+
+        /** The throughput of the last full read in bytes per nanosecond. */
+        double rate;
+
+        ChunkSize(final CopyOptions options) {
+            final int max = options.getBufferSize();
+            this.max = max;
+            this.size = options.isAdaptive() ? Math.min(BUFFER_SIZE, max) : max;
+        }
+
+        int get() { return size; }
+
+        void update(final int read, final long nanos) {
+            final int size = this.size;
+            if (read < size || size >= max)
+                return;
+            final double rate = (double) read / Math.max(1, nanos);
+            if (rate < this.rate / 2) {
+                max = size; // larger chunks do not pay off - stop growing
+            } else {
+                this.rate = rate;
+                this.size = size <= max / 2 ? size << 1 : max;
+            }
+        }
+    } // ChunkSize
+
+    /** Reads data from an input stream or a readable byte channel. */
+    private interface Input {
+
+        /**
+         * Reads data into the given byte buffer, starting at its position and
+         * up to its limit.
+         *
+         * @return The number of bytes read or -1 on end-of-file.
+         */
+        int read(ByteBuffer buf) throws IOException;
+    } // Input
+
+    /** Writes data to an output stream or a writable byte channel. */
+    private interface Output {
+
+        /** Writes the given number of bytes from the start of the buffer. */
+        void write(ByteBuffer buf, int length) throws IOException;
+
+        void flush() throws IOException;
+    } // Output
+
+    private static final class StreamInput implements Input {
+        final InputStream in;
+
+        StreamInput(final InputStream in) { this.in = in; }
+
+        @Override
+        public int read(final ByteBuffer buf) throws IOException {
+            return in.read(buf.array(), buf.arrayOffset() + buf.position(),
+                    buf.remaining());
+        }
+    } // StreamInput
+
+    private static final class StreamOutput implements Output {
+        final OutputStream out;
+
+        StreamOutput(final OutputStream out) { this.out = out; }
+
+        @Override
+        public void write(final ByteBuffer buf, final int length)
+        throws IOException {
+            out.write(buf.array(), buf.arrayOffset(), length);
+        }
+
+        @Override
+        public void flush() throws IOException { out.flush(); }
+    } // StreamOutput
+
+    private static final class ChannelInput implements Input {
+        final ReadableByteChannel in;
+
+        ChannelInput(final ReadableByteChannel in) { this.in = in; }
+
+        @Override
+        public int read(final ByteBuffer buf) throws IOException {
+            return in.read(buf);
+        }
+    } // ChannelInput
+
+    private static final class ChannelOutput implements Output {
+        final WritableByteChannel out;
+
+        ChannelOutput(final WritableByteChannel out) { this.out = out; }
+
+        @Override
+        public void write(final ByteBuffer buf, final int length)
+        throws IOException {
+            buf.position(0).limit(length);
+            while (buf.hasRemaining())
+                out.write(buf);
+        }
+
+        @Override
+        public void flush() { }
+    } // ChannelOutput
+
     /** A buffer for I/O. */
     private static final class Buffer {
         /**
-         * Each entry in this queue holds a soft reference to an array
-         * initialized with instances of this class.
+         * Maps buffer capacities to queues where each entry holds a soft
+         * reference to a heap byte buffer of this capacity.
          * <p>
          * The best choice would be a {@link ConcurrentLinkedDeque} where I
          * could call {@link Deque#push(Object)} to achieve many garbage
@@ -342,40 +923,147 @@ public class Streams {
          * A {@link LinkedBlockingDeque} is supposedly not a good choice
          * because it uses locks, which I would like to abandon.
          */
-        static final Queue<Reference<Buffer[]>> queue
-                = new ConcurrentLinkedQueue<>();
+        static final ConcurrentMap<Integer, Queue<Reference<ByteBuffer>>> heapQueues
+                = new ConcurrentHashMap<>();
+
+        /**
+         * Maps buffer capacities to queues of direct byte buffers of this
+         * capacity.
+         * Soft references are no good for direct byte buffers because the
+         * garbage collector only considers the heap memory when clearing
+         * them, so the pool could exhaust the direct memory.
+         * Instead, the total capacity of the queued direct byte buffers is
+         * bounded by {@link #MAX_DIRECT_POOL_SIZE}.
+         */
+        static final ConcurrentMap<Integer, Queue<ByteBuffer>> directQueues
+                = new ConcurrentHashMap<>();
 
-        static Buffer[] allocate() {
-            {
-                Reference<Buffer[]> reference;
+        /**
+         * The maximum total capacity of the direct byte buffers in the pool,
+         * which is {@value} bytes.
+         * Direct byte buffers which get released beyond this limit get left
+         * to the garbage collector.
+         */
+        static final long MAX_DIRECT_POOL_SIZE = 16 * 1024 * 1024;
+
+        /** The total capacity of the direct byte buffers in the pool. */
+        static final AtomicLong directPoolSize = new AtomicLong();
+
+        static Buffer[] allocate(
+                final int count,
+                final int size,
+                final boolean direct) {
+            final Buffer[] buffers = new Buffer[count];
+            for (int i = count; 0 <= --i; )
+                buffers[i] = new Buffer(buffer(size, direct));
+            return buffers;
+        }
+
+        static void release(final Buffer[] buffers) {
+            for (final Buffer buffer : buffers)
+                release(buffer.buf);
+        }
+
+        private static ByteBuffer buffer(final int size, final boolean direct) {
+            if (direct) {
+                final Queue<ByteBuffer> queue = directQueues.get(size);
+                if (null != queue) {
+                    final ByteBuffer buffer = queue.poll();
+                    if (null != buffer) {
+                        directPoolSize.addAndGet(-size);
+                        return buffer;
+                    }
+                }
+                return ByteBuffer.allocateDirect(size);
+            }
+            final Queue<Reference<ByteBuffer>> queue = heapQueues.get(size);
+            if (null != queue) {
+                Reference<ByteBuffer> reference;
                 while (null != (reference = queue.poll())) {
-                    final Buffer[] buffers = reference.get();
-                    if (null != buffers)
-                        return buffers;
+                    final ByteBuffer buffer = reference.get();
+                    if (null != buffer)
+                        return buffer;
                 }
             }
+            return ByteBuffer.allocate(size);
+        }
 
-            final Buffer[] buffers = new Buffer[FIFO_SIZE];
-            for (int i = buffers.length; 0 <= --i; )
-                buffers[i] = new Buffer();
-            return buffers;
+        private static void release(final ByteBuffer buffer) {
+            final int size = buffer.capacity();
+            if (buffer.isDirect()) {
+                if (MAX_DIRECT_POOL_SIZE < directPoolSize.addAndGet(size)) {
+                    directPoolSize.addAndGet(-size);
+                    return;
+                }
+                queue(directQueues, size).add(buffer);
+            } else {
+                //queue(heapQueues, size).push(new SoftReference<>(buffer));
+                queue(heapQueues, size).add(new SoftReference<>(buffer));
+            }
         }
 
-        static void release(Buffer[] buffers) {
-            //queue.push(new SoftReference<>(buffers));
-            queue.add(new SoftReference<>(buffers));
+        private static <E> Queue<E> queue(
+                final ConcurrentMap<Integer, Queue<E>> queues,
+                final Integer size) {
+            Queue<E> queue = queues.get(size);
+            if (null == queue) {
+                final Queue<E> newQueue = new ConcurrentLinkedQueue<>();
+                queue = queues.putIfAbsent(size, newQueue);
+                if (null == queue)
+                    queue = newQueue;
+            }
+            return queue;
         }
 
         /** The byte buffer used for reading and writing. */
-        final byte[] buf = new byte[BUFFER_SIZE];
+        ByteBuffer buf;
 
         /**
          * The actual number of bytes read into the buffer.
          * -1 represents end-of-file or {@link IOException}.
          */
         int read;
+
+        private Buffer(final ByteBuffer buf) { this.buf = buf; }
+
+        /**
+         * Ensures that the byte buffer has at least the given capacity and
+         * returns it with its position set to zero and its limit set to the
+         * given size.
+         * If the byte buffer is too small, then it gets replaced with a pooled
+         * byte buffer of the given size and released to the pool.
+         */
+        ByteBuffer resize(final int size) {
+            ByteBuffer buf = this.buf;
+            if (buf.capacity() < size) {
+                release(buf);
+                this.buf = buf = buffer(size, buf.isDirect());
+            }
+            buf.clear().limit(size);
+            return buf;
+        }
     } // Buffer
 
+    /**
+     * Provides the number of bytes of a source on demand, so that computing
+     * it can get skipped if it's not needed.
+     *
+     * @see #transfer(Source, Sink, CopyOptions, SizeHint)
+     */
+    @SuppressWarnings("PublicInnerClass")
+    public interface SizeHint {
+
+        /**
+         * Returns the number of bytes provided by the source if known or any
+         * negative value otherwise.
+         *
+         * @return The number of bytes provided by the source if known or any
+         *         negative value otherwise.
+         * @throws IOException on any I/O error.
+         */
+        long size() throws IOException;
+    }
+
     /** A factory for reader threads. */
     private static final class ReaderThreadFactory implements ThreadFactory {
 
@@ -0,0 +1,22 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * @author Christian Schlichtherle
+ */
+public class MappedReadOnlyChannelIT extends ReadOnlyChannelITSuite {
+
+    @Override
+    protected SeekableByteChannel newChannel(Path path) throws IOException {
+        // Use a window size which is not a divisor of the data size.
+        return new MappedReadOnlyChannel(FileChannel.open(path), 100);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io
+
+import java.nio._
+import java.util.concurrent._
+
+import org.junit.runner.RunWith
+import org.scalatest.Matchers._
+import org.scalatest.WordSpec
+import org.scalatest.junit.JUnitRunner
+
+import scala.util._
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class BufferedReadOnlyChannelTest extends WordSpec {
+
+  def random(length: Int) = {
+    val array = new Array[Byte](length)
+    Random nextBytes array
+    array
+  }
+
+  def read(channel: BufferedReadOnlyChannel, position: Long, length: Int) = {
+    val buffer = ByteBuffer allocate length
+    channel position position
+    while (buffer.hasRemaining && 0 <= (channel read buffer)) { }
+    buffer.array
+  }
+
+  "A BufferedReadOnlyChannel" when {
+    "constructed" should {
+      "reject a non-positive buffer size or page count" in {
+        intercept[IllegalArgumentException] {
+          new BufferedReadOnlyChannel(new ByteBufferChannel(ByteBuffer allocate 1), 0)
+        }
+        intercept[IllegalArgumentException] {
+          new BufferedReadOnlyChannel(new ByteBufferChannel(ByteBuffer allocate 1), 1, 0)
+        }
+      }
+    }
+
+    "alternating between two regions" should {
+      "reload its page with only one page" in {
+        val array = random(10000)
+        val channel = new BufferedReadOnlyChannel(
+          new ByteBufferChannel(ByteBuffer wrap array), 1000, 1)
+        for (_ <- 1 to 5) {
+          read(channel, 100, 10) should equal (array.slice(100, 110))
+          read(channel, 9000, 10) should equal (array.slice(9000, 9010))
+        }
+        channel.getHits should be (0)
+        channel.getMisses should be (10)
+      }
+
+      "not reload its pages with two or more pages" in {
+        val array = random(10000)
+        val channel = new BufferedReadOnlyChannel(
+          new ByteBufferChannel(ByteBuffer wrap array), 1000, 2)
+        for (_ <- 1 to 5) {
+          read(channel, 100, 10) should equal (array.slice(100, 110))
+          read(channel, 9000, 10) should equal (array.slice(9000, 9010))
+        }
+        channel.getHits should be (8)
+        channel.getMisses should be (2)
+      }
+    }
+
+    "reading at random positions" should {
+      "return the data of the decorated channel" in {
+        val array = random(100000)
+        val channel = new BufferedReadOnlyChannel(
+          new ByteBufferChannel(ByteBuffer wrap array), 512, 8)
+        for (_ <- 1 to 1000) {
+          val position = Random nextInt array.length
+          val length = Random nextInt (array.length - position + 1) min 2000
+          read(channel, position, length) should equal (array.slice(position, position + length))
+        }
+        channel.getHits should be > 0L
+        channel.getMisses should be > 0L
+      }
+    }
+
+    "reading sequentially with read ahead" should {
+      "prefetch the next pages" in {
+        val array = random(100000)
+        val executor = Executors.newSingleThreadExecutor
+        try {
+          val channel = new BufferedReadOnlyChannel(
+            new ByteBufferChannel(ByteBuffer wrap array), 1000, 2, 4, executor)
+          read(channel, 0, array.length) should equal (array)
+          channel.getMisses should be (2)
+          channel.getHits should be (98)
+          read(channel, 50500, 1000) should equal (array.slice(50500, 51500))
+          channel close ()
+        } finally {
+          executor shutdown ()
+        }
+      }
+
+      "read synchronously if the executor rejects the prefetches" in {
+        val array = random(100000)
+        val executor = new Executor {
+          def execute(command: Runnable) { throw new RejectedExecutionException }
+        }
+        val channel = new BufferedReadOnlyChannel(
+          new ByteBufferChannel(ByteBuffer wrap array), 1000, 2, 4, executor)
+        read(channel, 0, array.length) should equal (array)
+        channel.getMisses should be (100)
+      }
+
+      "not prefetch any pages with random access" in {
+        val array = random(100000)
+        var executed = 0
+        val executor = new Executor {
+          def execute(command: Runnable) { executed += 1; command run () }
+        }
+        val channel = new BufferedReadOnlyChannel(
+          new ByteBufferChannel(ByteBuffer wrap array), 1000, 2, 4, executor)
+        for (position <- Seq(90000, 10000, 50000, 30000, 70000))
+          read(channel, position, 10) should equal (array.slice(position, position + 10))
+        executed should be (0)
+      }
+    }
+
+    "reading many times" should {
+      "query the size of the decorated channel only once" in {
+        val array = random(10000)
+        var sizes = 0
+        val channel = new BufferedReadOnlyChannel(
+          new ByteBufferChannel(ByteBuffer wrap array) {
+            override def size = { sizes += 1; super.size }
+          }, 1000)
+        for (position <- 0 until array.length by 10)
+          read(channel, position, 10) should equal (array.slice(position, position + 10))
+        sizes should be (1)
+        channel sync ()
+        channel.size should be (array.length)
+        sizes should be (2)
+      }
+    }
+
+    "synced" should {
+      "reload its pages" in {
+        val array = random(1000)
+        val channel = new BufferedReadOnlyChannel(
+          new ByteBufferChannel(ByteBuffer wrap array), 100, 4)
+        read(channel, 0, 10)
+        array(0) = (array(0) + 1).toByte
+        read(channel, 0, 10) should not equal array.slice(0, 10)
+        channel sync ()
+        read(channel, 0, 10) should equal (array.slice(0, 10))
+        channel.getMisses should be (2)
+      }
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package net.java.truecommons3.io
 
 import java.io._
+import java.nio._
 import java.nio.channels._
+import java.nio.file._
 
 import net.java.truecommons3.io.ChannelInputStreamTest._
 import org.junit.runner.RunWith
@@ -82,9 +84,98 @@ extends WordSpec
         in.markSupported should equal (false)
       }
     }
+
+    "reading" should {
+      "read a given number of bytes" in {
+        val data = random(1000)
+        val in = new ChannelInputStream(new ByteBufferChannel(ByteBuffer wrap data))
+        val b = new Array[Byte](600)
+        in readNBytes (b, 100, 500) should be (500)
+        b drop 100 should equal (data take 500)
+        in readNBytes (b, 0, 600) should be (500)
+        b take 500 should equal (data drop 500)
+        in readNBytes 10 should have length 0
+      }
+
+      "read a given number of bytes into a new array" in {
+        val data = random(1000)
+        val in = new ChannelInputStream(new ByteBufferChannel(ByteBuffer wrap data))
+        in readNBytes 100 should equal (data take 100)
+        in readNBytes Integer.MAX_VALUE should equal (data drop 100)
+        intercept[IllegalArgumentException](in readNBytes -1)
+      }
+
+      "read a given number of bytes into a new array even if the size of the channel is wrong" in {
+        val data = random(100000)
+        for (hint <- Seq(0L, 1000L, 200000L)) {
+          val in = new ChannelInputStream(new ByteBufferChannel(ByteBuffer wrap data) {
+            override def size() = hint
+          })
+          in readNBytes 50000 should equal (data take 50000)
+          in readNBytes Integer.MAX_VALUE should equal (data drop 50000)
+          in readNBytes 10 should have length 0
+        }
+      }
+
+      "skip by moving the position of the channel" in {
+        val data = random(1000)
+        val channel = new ByteBufferChannel(ByteBuffer wrap data)
+        val in = new ChannelInputStream(channel)
+        in skip 100 should be (100)
+        in.read should be (data(100) & 0xff)
+        in skip 5000000000L should be (899)
+        channel.position should be (1000)
+        in.read should be (-1)
+        in skip 1 should be (0)
+      }
+    }
+
+    "transferring to a channel output stream" should {
+      "copy all remaining data from channel to channel" in {
+        val data = random(100000)
+        val source = Files createTempFile ("tzp", null)
+        val sink = Files createTempFile ("tzp", null)
+        try {
+          Files write (source, data)
+          val in = new ChannelInputStream(FileChannel open source)
+          try {
+            in skip 1000
+            val out = new ChannelOutputStream(FileChannel open (sink, StandardOpenOption.WRITE))
+            try {
+              out write (data, 0, 10)
+              in transferTo out should be (99000)
+              out write (data, 10, 10)
+            } finally {
+              out close ()
+            }
+            in.read should be (-1)
+          } finally {
+            in close ()
+          }
+          Files readAllBytes sink should equal ((data take 10) ++ (data drop 1000) ++ (data slice (10, 20)))
+        } finally {
+          Files delete source
+          Files delete sink
+        }
+      }
+
+      "copy all remaining data to any other output stream" in {
+        val data = random(100000)
+        val in = new ChannelInputStream(new ByteBufferChannel(ByteBuffer wrap data))
+        val out = new ByteArrayOutputStream
+        in transferTo out should be (100000)
+        out.toByteArray should equal (data)
+      }
+    }
   }
 }
 
 object ChannelInputStreamTest {
   private def stream = new ChannelInputStream(mock[SeekableByteChannel])
+
+  private def random(length: Int) = {
+    val data = new Array[Byte](length)
+    Random nextBytes data
+    data
+  }
 }
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io
+
+import java.nio._
+import java.nio.channels._
+import java.nio.file._
+import java.util.concurrent._
+import java.util.concurrent.locks._
+
+import org.junit.runner.RunWith
+import org.scalatest.Matchers._
+import org.scalatest.WordSpec
+import org.scalatest.junit.JUnitRunner
+
+import scala.util._
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class DecoratingSeekableChannelTest extends WordSpec {
+
+  def random(length: Int) = {
+    val array = new Array[Byte](length)
+    Random nextBytes array
+    array
+  }
+
+  class CountingLock extends ReentrantLock {
+    var count = 0
+    override def lock() { count += 1; super.lock() }
+  }
+
+  "A LockSeekableChannel" when {
+    "decorating a file channel" should {
+      "gather and scatter while locking only once per call" in {
+        val path = Files createTempFile ("tzp", null)
+        try {
+          val header = random(10)
+          val payload = random(1000)
+          val trailer = random(20)
+          val lock = new CountingLock
+          val channel = new LockSeekableChannel(lock, FileChannel open (path,
+            StandardOpenOption.READ, StandardOpenOption.WRITE))
+          try {
+            channel write Array(ByteBuffer wrap header, ByteBuffer wrap payload, ByteBuffer wrap trailer) should be (1030)
+            lock.count should be (1)
+            channel position 0
+            val buffers = Array(ByteBuffer allocate 10, ByteBuffer allocate 1000, ByteBuffer allocate 20)
+            channel read buffers should be (1030)
+            lock.count should be (3)
+            buffers map (_.array.toSeq) should equal (Array(header.toSeq, payload.toSeq, trailer.toSeq))
+            buffers foreach (_.clear())
+            channel read buffers should be (-1)
+          } finally {
+            channel close ()
+          }
+        } finally {
+          Files delete path
+        }
+      }
+
+      "not let a transfer bypass its lock" in {
+        val in = Files createTempFile ("tzp", null)
+        try {
+          val out = Files createTempFile ("tzp", null)
+          try {
+            val data = random(100000)
+            Files write (in, data)
+            val lock = new ReentrantLock
+            val source = new AbstractSource {
+              override def channel() = Files newByteChannel in
+            }
+            val sink = new AbstractSink {
+              override def channel() = new LockSeekableChannel(lock,
+                FileChannel open (out, StandardOpenOption.WRITE))
+            }
+            val transfer = new FutureTask[Unit](new Callable[Unit] {
+              override def call() { Streams transfer (source, sink) }
+            })
+            lock lock ()
+            try {
+              new Thread(transfer) start ()
+              while (!transfer.isDone && !lock.hasQueuedThreads)
+                Thread sleep 10
+              transfer.isDone should be (false)
+              Files size out should be (0L)
+            } finally {
+              lock unlock ()
+            }
+            transfer get ()
+            Files readAllBytes out should equal (data)
+          } finally {
+            Files delete out
+          }
+        } finally {
+          Files delete in
+        }
+      }
+    }
+
+    "decorating a channel without vectored I/O" should {
+      "gather and scatter" in {
+        val channel = new LockSeekableChannel(new ReentrantLock,
+          new ByteBufferChannel(ByteBuffer allocate 0))
+        val a = random(10)
+        val b = random(30)
+        channel write Array(ByteBuffer wrap a, ByteBuffer allocate 0, ByteBuffer wrap b) should be (40)
+        channel position 0
+        val buffers = Array(ByteBuffer allocate 10, ByteBuffer allocate 40)
+        channel read buffers should be (40)
+        buffers(0).array should equal (a)
+        buffers(1).array.take(30) should equal (b)
+        channel read buffers should be (-1)
+        intercept[IndexOutOfBoundsException](channel read (buffers, 1, 2))
+      }
+    }
+
+    "subclassed to observe the data" should {
+      "not let gathering and scattering bypass its single buffer methods" in {
+        var reads, writes = 0L
+        val channel = new LockSeekableChannel(new ReentrantLock,
+          FileChannel open (Files createTempFile ("tzp", null),
+            StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE)) {
+          override def read(dst: ByteBuffer) = {
+            val n = super.read(dst)
+            if (0 < n) reads += n
+            n
+          }
+          override def write(src: ByteBuffer) = {
+            val n = super.write(src)
+            writes += n
+            n
+          }
+        }
+        try {
+          channel write Array(ByteBuffer wrap random(10), ByteBuffer wrap random(30)) should be (40)
+          writes should be (40)
+          channel position 0
+          channel read Array(ByteBuffer allocate 10, ByteBuffer allocate 40) should be (40)
+          reads should be (40)
+        } finally {
+          channel close ()
+        }
+      }
+    }
+  }
+
+  "A DisconnectingSeekableChannel" when {
+    "subclassed to observe the data" should {
+      "not let a transfer bypass its write method" in {
+        val in = Files createTempFile ("tzp", null)
+        try {
+          val out = Files createTempFile ("tzp", null)
+          try {
+            val data = random(100000)
+            Files write (in, data)
+            var written = 0L
+            val source = new AbstractSource {
+              override def channel() = Files newByteChannel in
+            }
+            val sink = new AbstractSink {
+              override def channel() = new DisconnectingSeekableChannel(
+                FileChannel open (out, StandardOpenOption.WRITE)) {
+                override def isOpen = channel.isOpen
+                override def write(src: ByteBuffer) = {
+                  val n = super.write(src)
+                  written += n
+                  n
+                }
+                override def close() { channel close () }
+              }
+            }
+            Streams transfer (source, sink)
+            written should be (data.length)
+            Files readAllBytes out should equal (data)
+          } finally {
+            Files delete out
+          }
+        } finally {
+          Files delete in
+        }
+      }
+
+      "not let gathering and scattering bypass its single buffer methods" in {
+        var reads, writes = 0L
+        val channel = new DisconnectingSeekableChannel(
+          new ByteBufferChannel(ByteBuffer allocate 0)) {
+          override def isOpen = channel.isOpen
+          override def read(dst: ByteBuffer) = {
+            val n = super.read(dst)
+            if (0 < n) reads += n
+            n
+          }
+          override def write(src: ByteBuffer) = {
+            val n = super.write(src)
+            writes += n
+            n
+          }
+          override def close() { channel close () }
+        }
+        channel write Array(ByteBuffer wrap random(10), ByteBuffer wrap random(30)) should be (40)
+        writes should be (40)
+        channel position 0
+        channel read Array(ByteBuffer allocate 10, ByteBuffer allocate 40) should be (40)
+        reads should be (40)
+      }
+    }
+  }
+
+  "A BufferedReadOnlyChannel" when {
+    "reading" should {
+      "scatter its own data" in {
+        val array = random(100)
+        val channel = new BufferedReadOnlyChannel(
+          new ByteBufferChannel(ByteBuffer wrap array), 16)
+        channel position 50
+        val buffers = Array(ByteBuffer allocate 20, ByteBuffer allocate 40)
+        channel read buffers should be (50)
+        buffers(0).array should equal (array.slice(50, 70))
+        buffers(1).array.take(30) should equal (array.slice(70, 100))
+        intercept[NonWritableChannelException](channel write Array(ByteBuffer allocate 1))
+      }
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io
+
+import java.util.concurrent.{Callable, Executors, TimeUnit}
+
+import org.junit.runner.RunWith
+import org.scalatest.Matchers._
+import org.scalatest.WordSpec
+import org.scalatest.junit.JUnitRunner
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class FifoTest extends WordSpec {
+
+  "A FIFO" should {
+    "reject an empty array of slots" in {
+      intercept[IllegalArgumentException] {
+        new Fifo(new Array[Array[Long]](0))
+      }
+    }
+
+    "pass all slots from the producer to the consumer in order" in {
+      for (length <- Seq(1, 2, 4, 16)) {
+        val fifo = new Fifo(Array.fill(length)(new Array[Long](1)))
+        val count = 100000L
+        val executor = Executors.newSingleThreadExecutor
+        try {
+          val producer = executor submit new Callable[Unit] {
+            def call() {
+              for (i <- 0L until count) {
+                fifo.awaitPut()(0) = i
+                fifo.put()
+              }
+            }
+          }
+          for (i <- 0L until count) {
+            fifo.awaitTake()(0) should be (i)
+            fifo.take()
+          }
+          producer get (10, TimeUnit.SECONDS)
+        } finally {
+          executor.shutdownNow()
+        }
+      }
+    }
+
+    "throw an InterruptedException" when {
+      "interrupting the producer while waiting for a free slot" in {
+        val fifo = new Fifo(Array(new Array[Long](1)))
+        fifo.awaitPut()
+        fifo.put()
+        Thread.currentThread.interrupt()
+        intercept[InterruptedException](fifo.awaitPut())
+      }
+
+      "interrupting the consumer while waiting for a published slot" in {
+        val fifo = new Fifo(Array(new Array[Long](1)))
+        Thread.currentThread.interrupt()
+        intercept[InterruptedException](fifo.awaitTake())
+      }
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io
+
+import java.nio._
+import java.nio.channels._
+import java.nio.file._
+import java.util.concurrent._
+import java.util.concurrent.locks._
+
+import org.junit.runner.RunWith
+import org.scalatest.Matchers._
+import org.scalatest.WordSpec
+import org.scalatest.junit.JUnitRunner
+
+import scala.util._
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class IntervalReadOnlyChannelTest extends WordSpec {
+
+  def random(length: Int) = {
+    val array = new Array[Byte](length)
+    Random nextBytes array
+    array
+  }
+
+  def withTempFile(array: Array[Byte])(test: Path => Any) {
+    val path = Files createTempFile ("tzp", null)
+    try {
+      Files write (path, array)
+      test(path)
+    } finally {
+      Files delete path
+    }
+  }
+
+  def concurrentlyReadIntervals(array: Array[Byte], channel: SeekableByteChannel) {
+    channel position 12345
+    val executor = Executors newFixedThreadPool 8
+    try {
+      val futures = for (i <- 0 until 100) yield {
+        executor submit new Callable[Unit] {
+          def call() {
+            val start = i * 1000
+            val interval = new IntervalReadOnlyChannel(channel, start, 1000)
+            for (_ <- 1 to 10) {
+              val buffer = ByteBuffer allocate 1000
+              interval position 0
+              while (buffer.hasRemaining && 0 <= (interval read buffer)) { }
+              buffer.array should equal (array.slice(start, start + 1000))
+            }
+            interval close ()
+          }
+        }
+      }
+      futures foreach (_.get)
+    } finally {
+      executor shutdown ()
+    }
+    channel.position should be (12345)
+  }
+
+  "Many IntervalReadOnlyChannels" when {
+    "decorating the same file channel" should {
+      "concurrently read their intervals without moving its file pointer" in {
+        val array = random(100000)
+        withTempFile(array) { path =>
+          val channel = FileChannel open path
+          try {
+            concurrentlyReadIntervals(array, channel)
+          } finally {
+            channel close ()
+          }
+        }
+      }
+    }
+
+    "decorating the same lock seekable channel" should {
+      "concurrently read their intervals without moving its file pointer" in {
+        val array = random(100000)
+        withTempFile(array) { path =>
+          val channel = new LockSeekableChannel(
+            new ReentrantReadWriteLock, FileChannel open path)
+          try {
+            concurrentlyReadIntervals(array, channel)
+          } finally {
+            channel close ()
+          }
+        }
+        concurrentlyReadIntervals(array, new LockSeekableChannel(
+          new ReentrantLock, new ByteBufferChannel(ByteBuffer wrap array)))
+      }
+    }
+  }
+}
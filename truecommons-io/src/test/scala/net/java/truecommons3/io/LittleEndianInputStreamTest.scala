@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io
+
+import java.io._
+import java.nio._
+
+import org.junit.runner.RunWith
+import org.scalatest.Matchers._
+import org.scalatest.WordSpec
+import org.scalatest.junit.JUnitRunner
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class LittleEndianInputStreamTest extends WordSpec {
+
+  class CountingInputStream(array: Array[Byte]) extends ByteArrayInputStream(array) {
+    var reads = 0
+    override def read() = { reads += 1; super.read() }
+    override def read(b: Array[Byte], off: Int, len: Int) = { reads += 1; super.read(b, off, len) }
+  }
+
+  def data = {
+    val sink = new ByteArrayOutputStream
+    val out = new LittleEndianOutputStream(sink)
+    out writeBoolean true
+    out writeByte 0xff
+    out writeShort 0xffff
+    out writeChar 'x'
+    out writeInt 0xffffffff
+    out writeLong 0x0123456789abcdefL
+    out writeFloat 1.5f
+    out writeDouble 2.5
+    out write Array[Byte](1, 2, 3)
+    out close ()
+    sink.toByteArray
+  }
+
+  def readAll(in: LittleEndianInputStream) {
+    in.readBoolean should be (true)
+    in.readUByte should be (0xff)
+    in.readUShort should be (0xffff)
+    in.readChar should be ('x')
+    in.readUInt should be (0xffffffffL)
+    in.readLong should be (0x0123456789abcdefL)
+    in.readFloat should be (1.5f)
+    in.readDouble should be (2.5)
+    val array = new Array[Byte](3)
+    in readFully array
+    array should equal (Array[Byte](1, 2, 3))
+    in.read should be (-1)
+  }
+
+  "A LittleEndianInputStream" when {
+    "reading a stream" should {
+      "read the data in little endian format in a few chunks" in {
+        val source = new CountingInputStream(data)
+        readAll(new LittleEndianInputStream(source, 8))
+        source.reads should be < 10
+      }
+
+      "read signed values" in {
+        val in = new LittleEndianInputStream(new ByteArrayInputStream(data))
+        in.readByte should be (1)
+        in.readByte should be (-1)
+        in.readShort should be (-1)
+        in.readChar should be ('x')
+        in.readInt should be (-1)
+      }
+
+      "skip and read bulk data" in {
+        val array = Array.tabulate[Byte](100)(_.toByte)
+        val in = new LittleEndianInputStream(new ByteArrayInputStream(array), 8)
+        in skip 3 should be (3)
+        in.readUByte should be (3)
+        val b = new Array[Byte](50)
+        in readFully b
+        b should equal (array slice (4, 54))
+        in skip 100 should be > 0L
+      }
+
+      "fail with an EOFException on truncated data" in {
+        val in = new LittleEndianInputStream(new ByteArrayInputStream(Array[Byte](1, 2, 3)))
+        intercept[EOFException](in.readInt)
+        intercept[EOFException](in readFully new Array[Byte](4))
+      }
+
+      "reject a buffer size which is too small" in {
+        intercept[IllegalArgumentException](new LittleEndianInputStream(new ByteArrayInputStream(data), 7))
+      }
+    }
+
+    "reading a channel" should {
+      "read the data in little endian format" in {
+        readAll(new LittleEndianInputStream(new ByteBufferChannel(ByteBuffer wrap data), 8))
+      }
+
+      "bypass the buffer for bulk reads and retry reads which return zero" in {
+        val bytes = data
+        val channel = new ByteBufferChannel(ByteBuffer wrap bytes) {
+          var stall = false
+          override def read(dst: ByteBuffer) = {
+            stall = !stall
+            if (stall) 0 else super.read(dst)
+          }
+        }
+        val in = new LittleEndianInputStream(channel, 8)
+        val array = new Array[Byte](bytes.length)
+        in read array should be (bytes.length)
+        array should equal (bytes)
+        in read array should be (-1)
+        in.read should be (-1)
+      }
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io
+
+import java.io._
+import java.nio._
+
+import org.junit.runner.RunWith
+import org.scalatest.Matchers._
+import org.scalatest.WordSpec
+import org.scalatest.junit.JUnitRunner
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class LittleEndianOutputStreamTest extends WordSpec {
+
+  class CountingOutputStream extends ByteArrayOutputStream {
+    var writes = 0
+    override def write(b: Int) { writes += 1; super.write(b) }
+    override def write(b: Array[Byte], off: Int, len: Int) { writes += 1; super.write(b, off, len) }
+  }
+
+  class FailingOutputStream extends ByteArrayOutputStream {
+    var failing = false
+    override def write(b: Array[Byte], off: Int, len: Int) {
+      if (failing) {
+        failing = false
+        throw new IOException
+      }
+      super.write(b, off, len)
+    }
+  }
+
+  def writeAll(out: LittleEndianOutputStream) {
+    out writeBoolean true
+    out writeByte 0x12
+    out writeShort 0x3456
+    out writeChar 'x'
+    out writeInt 0x789abcde
+    out writeLong 0x0123456789abcdefL
+    out writeFloat 1.5f
+    out writeDouble 2.5
+    out writeBytes "ab"
+    out writeChars "cd"
+    out writeInts Array(1, 2, 3)
+    out writeLongs (Array(4L, 5L, 6L, 7L), 1, 2)
+    out writeBuffer (PowerBuffer wrap Array[Byte](8, 9))
+    val direct = MutableBuffer allocateDirect 3
+    direct put Array[Byte](10, 11, 12)
+    direct flip ()
+    out writeBuffer direct
+    direct.hasRemaining should be (false)
+    out write (Array[Byte](13, 14, 15), 1, 2)
+  }
+
+  def expected = {
+    val bb = ByteBuffer allocate 1000 order ByteOrder.LITTLE_ENDIAN
+    bb put 1.toByte put 0x12.toByte putShort 0x3456.toShort putChar 'x'
+    bb putInt 0x789abcde putLong 0x0123456789abcdefL putFloat 1.5f putDouble 2.5
+    bb put 'a'.toByte put 'b'.toByte putChar 'c' putChar 'd'
+    bb putInt 1 putInt 2 putInt 3 putLong 5 putLong 6
+    bb put Array[Byte](8, 9, 10, 11, 12, 14, 15)
+    bb flip ()
+    val array = new Array[Byte](bb.remaining)
+    bb get array
+    array
+  }
+
+  "A LittleEndianOutputStream" when {
+    "unbuffered" should {
+      "write the data in little endian format" in {
+        val sink = new ByteArrayOutputStream
+        val out = new LittleEndianOutputStream(sink)
+        writeAll(out)
+        out.size should be (expected.length)
+        sink.toByteArray should equal (expected)
+      }
+
+      "neither count nor write again a value if writing it fails" in {
+        val sink = new FailingOutputStream
+        val out = new LittleEndianOutputStream(sink)
+        out writeInt 1
+        sink.failing = true
+        intercept[IOException](out writeLong 2)
+        out.size should be (4)
+        out writeInt 3
+        out.size should be (8)
+        val bb = ByteBuffer allocate 8 order ByteOrder.LITTLE_ENDIAN
+        bb putInt 1 putInt 3
+        sink.toByteArray should equal (bb.array)
+      }
+    }
+
+    "buffered" should {
+      "write the data in little endian format in a few chunks" in {
+        val sink = new CountingOutputStream
+        val out = new LittleEndianOutputStream(sink, 16)
+        writeAll(out)
+        out.size should be (expected.length)
+        out flush ()
+        sink.toByteArray should equal (expected)
+        sink.writes should be < 10
+      }
+
+      "account for buffered data and write it when closing" in {
+        val sink = new CountingOutputStream
+        val out = new LittleEndianOutputStream(sink, 1024)
+        out writeInts new Array[Int](100)
+        out.size should be (400)
+        sink.writes should be (0)
+        out writeLongs new Array[Long](100)
+        out.size should be (1200)
+        sink.writes should be (1)
+        out close ()
+        sink.writes should be (2)
+        sink.size should be (1200)
+      }
+
+      "retain the buffered data if writing it fails" in {
+        val sink = new FailingOutputStream
+        val out = new LittleEndianOutputStream(sink, 16)
+        out writeLong 1
+        out writeLong 2
+        sink.failing = true
+        intercept[IOException](out writeLong 3)
+        out.size should be (16)
+        out writeLong 3
+        out flush ()
+        val bb = ByteBuffer allocate 24 order ByteOrder.LITTLE_ENDIAN
+        bb putLong 1 putLong 2 putLong 3
+        sink.toByteArray should equal (bb.array)
+      }
+
+      "reject a buffer size which is too small" in {
+        intercept[IllegalArgumentException](new LittleEndianOutputStream(new ByteArrayOutputStream, 7))
+        intercept[IllegalArgumentException](new LittleEndianOutputStream(new ByteArrayOutputStream, -1))
+      }
+    }
+  }
+}
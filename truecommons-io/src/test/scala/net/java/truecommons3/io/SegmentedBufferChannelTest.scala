@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2005-2015 Schlichtherle IT Services.
+ * All rights reserved. Use is subject to license terms.
+ */
+package net.java.truecommons3.io
+
+import java.nio._
+import java.nio.channels._
+
+import org.junit.runner.RunWith
+import org.scalatest.Matchers._
+import org.scalatest.WordSpec
+import org.scalatest.junit.JUnitRunner
+
+import scala.collection.JavaConverters._
+import scala.util._
+
+/** @author Christian Schlichtherle */
+@RunWith(classOf[JUnitRunner])
+class SegmentedBufferChannelTest extends WordSpec {
+
+  def random(length: Int) = {
+    val array = new Array[Byte](length)
+    Random nextBytes array
+    array
+  }
+
+  def contents(channel: SeekableByteChannel) = {
+    val buffer = ByteBuffer allocate channel.size.toInt
+    channel position 0
+    while (buffer.hasRemaining && 0 <= (channel read buffer)) { }
+    buffer.array
+  }
+
+  "A SegmentedBufferChannel" when {
+    "constructed" should {
+      "reject a non-positive segment size" in {
+        intercept[IllegalArgumentException](new SegmentedBufferChannel(0, false))
+      }
+
+      "reject segments of different sizes" in {
+        intercept[IllegalArgumentException] {
+          new SegmentedBufferChannel(List(ByteBuffer allocate 2, ByteBuffer allocate 1, ByteBuffer allocate 2).asJava)
+        }
+      }
+    }
+
+    "writing" should {
+      "append segments without copying the existing ones" in {
+        val channel = new SegmentedBufferChannel(16, false)
+        channel write (ByteBuffer wrap random(10))
+        val first = channel.getSegments.get(0)
+        val array = random(100)
+        channel position 0
+        channel write (ByteBuffer wrap array)
+        channel.size should be (100)
+        val segments = channel.getSegments.asScala
+        segments should have size 7
+        segments.init foreach (_.limit should be (16))
+        segments.last.limit should be (4)
+        segments.head.array should be theSameInstanceAs first.array
+        contents(channel) should equal (array)
+      }
+
+      "fill gaps with zeros" in {
+        val channel = new SegmentedBufferChannel(4, true)
+        channel write (ByteBuffer wrap Array[Byte](1, 2, 3, 4, 5))
+        channel truncate 2
+        channel position 6
+        channel write (ByteBuffer wrap Array[Byte](7))
+        contents(channel) should equal (Array[Byte](1, 2, 0, 0, 0, 0, 7))
+      }
+
+      "gather from multiple buffers" in {
+        val a = random(10)
+        val b = random(30)
+        val channel = new SegmentedBufferChannel(8, false)
+        channel write Array(ByteBuffer wrap a, ByteBuffer wrap b) should be (40)
+        contents(channel) should equal (a ++ b)
+      }
+    }
+
+    "reading" should {
+      "scatter to multiple buffers" in {
+        val array = random(40)
+        val channel = new SegmentedBufferChannel(8, false)
+        channel write (ByteBuffer wrap array)
+        channel position 0
+        val a = ByteBuffer allocate 10
+        val b = ByteBuffer allocate 40
+        channel read Array(a, b) should be (40)
+        channel read Array(a, b) should be (-1)
+        (a.array ++ b.array.take(30)) should equal (array)
+      }
+
+      "share the contents of the given segments" in {
+        val array = random(40)
+        val segments = (array grouped 16 map (ByteBuffer wrap _)).toList
+        val channel = new SegmentedBufferChannel(segments.asJava)
+        channel.size should be (40)
+        channel position 20
+        val buffer = ByteBuffer allocate 40
+        channel read buffer should be (20)
+        buffer.flip()
+        buffer.remaining should be (20)
+        contents(channel) should equal (array)
+        intercept[NonWritableChannelException](channel write (ByteBuffer allocate 1))
+      }
+    }
+
+    "closed" should {
+      "fail with a ClosedChannelException" in {
+        val channel = new SegmentedBufferChannel(8, false)
+        channel close ()
+        intercept[ClosedChannelException](channel read (ByteBuffer allocate 1))
+        intercept[ClosedChannelException](channel write (ByteBuffer allocate 1))
+        intercept[ClosedChannelException](channel.size)
+      }
+    }
+  }
+}
@@ -5,7 +5,13 @@
 package net.java.truecommons3.io
 
 import java.io._
+import java.nio.ByteBuffer
 import java.nio.channels.SeekableByteChannel
+import java.nio.file.Files
+import java.nio.file.StandardOpenOption._
+import java.util.Collections
+import java.util.concurrent.{AbstractExecutorService, CountDownLatch, Executors, ThreadPoolExecutor, TimeUnit}
+import java.util.concurrent.locks.ReentrantLock
 
 import net.java.truecommons3.io.Streams._
 import net.java.truecommons3.io.StreamsTest._
@@ -81,6 +87,181 @@ class StreamsTest extends WordSpec {
     }
   }
 
+  "Streams.cat(InputStream, OutputStream, CopyOptions)" should {
+    "fail with a NullPointerException" when givenA {
+      "null CopyOptions" in {
+        intercept[NullPointerException] {
+          cat(in, out, null)
+        }
+      }
+    }
+
+    "produce a copy of the data" when {
+      for (options <- Seq(
+        CopyOptions.DEFAULT withFifoSize 2,
+        CopyOptions.DEFAULT withFifoSize 16,
+        CopyOptions.DEFAULT withBufferSize 1,
+        CopyOptions.DEFAULT withBufferSize 1000,
+        CopyOptions.DEFAULT withBufferSize (1024 * 1024),
+        CopyOptions.DEFAULT withAdaptive true,
+        CopyOptions.DEFAULT withAdaptive true withBufferSize 1000,
+        CopyOptions.DEFAULT withAdaptive true withBufferSize (1024 * 1024)
+      )) {
+        s"using $options" in {
+          val in = StreamsTest.in
+          val out = StreamsTest.out
+          cat(in, out, options)
+          in.available should be (0)
+          in.bytes should equal (out.toByteArray)
+        }
+      }
+
+      "using a custom executor" in {
+        val executor = Executors.newSingleThreadExecutor
+        try {
+          val in = StreamsTest.in
+          val out = StreamsTest.out
+          cat(in, out, CopyOptions.DEFAULT withExecutor executor)
+          in.available should be (0)
+          in.bytes should equal (out.toByteArray)
+        } finally {
+          executor.shutdownNow()
+        }
+      }
+
+      "the executor rejects the reader task" in {
+        val executor = Executors.newSingleThreadExecutor
+        executor.shutdown()
+        val sameThreadCopies = getStatistics.getSameThreadCopies
+        val in = StreamsTest.in
+        val out = StreamsTest.out
+        cat(in, out, CopyOptions.DEFAULT withExecutor executor)
+        in.available should be (0)
+        in.bytes should equal (out.toByteArray)
+        getStatistics.getSameThreadCopies should be > sameThreadCopies
+      }
+    }
+
+    "fail with the original IOException from InputStream.read(byte[], int, int)" when {
+      "the executor rejects the reader task" in {
+        val executor = Executors.newSingleThreadExecutor
+        executor.shutdown()
+        val in = mock[InputStream]
+        val out = mock[OutputStream]
+        val e = new IOException
+        doThrow(e) when in read (any, any, any)
+        intercept[IOException] {
+          cat(in, out, CopyOptions.DEFAULT withExecutor executor)
+        } should be theSameInstanceAs e
+        verify(out) flush ()
+      }
+    }
+
+    "copy in the current thread" when {
+      "reading from a byte buffer channel" in {
+        val data = StreamsTest.in.bytes
+        val out = StreamsTest.out
+        val options = CopyOptions.DEFAULT withExecutor failingExecutor withSameThreadThreshold 0
+        cat(new ChannelInputStream(new ByteBufferChannel(ByteBuffer wrap data)), out, options)
+        out.toByteArray should equal (data)
+      }
+
+      "reading from a file channel with a size below the threshold" in {
+        withTempFiles { (in, _) =>
+          val out = StreamsTest.out
+          val options = CopyOptions.DEFAULT withExecutor failingExecutor withSameThreadThreshold Long.MaxValue
+          val channel = Files.newByteChannel(in)
+          try {
+            cat(new ChannelInputStream(channel), out, options)
+          } finally {
+            channel.close()
+          }
+          out.toByteArray should equal (Files.readAllBytes(in))
+        }
+      }
+    }
+
+    "update the statistics" in {
+      val statistics = getStatistics
+      val copies = statistics.getCopies
+      val bytesCopied = statistics.getBytesCopied
+      val in = StreamsTest.in
+      cat(in, StreamsTest.out)
+      statistics.getCopies should be > copies
+      statistics.getBytesCopied should be >= bytesCopied + in.bytes.length
+      statistics.getActiveReaders should be >= 0
+      statistics.getQueuedCopies should be >= 0
+    }
+  }
+
+  "Streams.newExecutor()" should {
+    "return a bounded pool of reader threads" when {
+      "virtual threads are unavailable" in {
+        assume(Try(classOf[Executors] getMethod "newVirtualThreadPerTaskExecutor").isFailure)
+        withExecutor(newExecutor())(checkReaderPool)
+      }
+
+      "platform threads are forced" in {
+        withPlatformThreads(withExecutor(newExecutor())(checkReaderPool))
+      }
+    }
+
+    "return a pool which lets a copy run in the current thread" when {
+      "all reader threads are busy" in {
+        withPlatformThreads {
+          withExecutor(newExecutor()) { executor =>
+            val latch = new CountDownLatch(1)
+            try {
+              for (_ <- 1 to MAX_READERS)
+                executor submit new Runnable { override def run() { latch await () } }
+              val sameThreadCopies = getStatistics.getSameThreadCopies
+              val in = StreamsTest.in
+              val out = StreamsTest.out
+              cat(in, out, CopyOptions.DEFAULT withExecutor executor)
+              in.bytes should equal (out.toByteArray)
+              getStatistics.getSameThreadCopies should be > sameThreadCopies
+            } finally {
+              latch countDown ()
+            }
+          }
+        }
+      }
+    }
+  }
+
+  "CopyOptions" should {
+    "fail with an IllegalArgumentException" when givenA {
+      "FIFO size less than two" in {
+        intercept[IllegalArgumentException] {
+          CopyOptions.DEFAULT withFifoSize 1
+        }
+      }
+
+      "buffer size less than one" in {
+        intercept[IllegalArgumentException] {
+          CopyOptions.DEFAULT withBufferSize 0
+        }
+      }
+
+      "negative same thread threshold" in {
+        intercept[IllegalArgumentException] {
+          CopyOptions.DEFAULT withSameThreadThreshold (-1)
+        }
+      }
+    }
+
+    "have value semantics" in {
+      val options = CopyOptions.DEFAULT withFifoSize 8 withBufferSize 1024 withAdaptive true withSameThreadThreshold 0
+      options should equal (CopyOptions.DEFAULT withSameThreadThreshold 0 withAdaptive true withBufferSize 1024 withFifoSize 8)
+      options.hashCode should equal ((CopyOptions.DEFAULT withSameThreadThreshold 0 withAdaptive true withBufferSize 1024 withFifoSize 8).hashCode)
+      options should not equal CopyOptions.DEFAULT
+      options.getFifoSize should be (8)
+      options.getBufferSize should be (1024)
+      options.isAdaptive should be (true)
+      options.getSameThreadThreshold should be (0)
+    }
+  }
+
   "Streams.copy(InputStream, OutputStream)" should {
     "fail with a NullPointerException" when givenA {
       "null InputStream" in {
@@ -349,6 +530,89 @@ class StreamsTest extends WordSpec {
     }
   }
 
+  "Streams.transfer(Source, Sink)" should {
+    "produce a copy of the data" when {
+      "given file channels" in {
+        withTempFiles { (in, out) =>
+          transfer(fileSource(in), fileSink(out))
+          Files.readAllBytes(out) should equal (Files.readAllBytes(in))
+        }
+      }
+
+      "given decorated file channels" in {
+        withTempFiles { (in, out) =>
+          val source = new AbstractSource {
+            override def channel() =
+              new BufferedReadOnlyChannel(Files.newByteChannel(in))
+          }
+          val sink = new AbstractSink {
+            override def channel() =
+              new LockSeekableChannel(new ReentrantLock,
+                Files.newByteChannel(out, WRITE, TRUNCATE_EXISTING))
+          }
+          transfer(source, sink)
+          Files.readAllBytes(out) should equal (Files.readAllBytes(in))
+        }
+      }
+
+      "given a file channel and an output stream" in {
+        withTempFiles { (in, _) =>
+          val out = StreamsTest.out
+          transfer(fileSource(in), sink(out))
+          out.toByteArray should equal (Files.readAllBytes(in))
+        }
+      }
+
+      "given an input stream and a file channel" in {
+        withTempFiles { (_, out) =>
+          val in = StreamsTest.in
+          transfer(source(in), fileSink(out))
+          Files.readAllBytes(out) should equal (in.bytes)
+        }
+      }
+
+      "given an input stream and an output stream" in {
+        val in = StreamsTest.in
+        val out = StreamsTest.out
+        transfer(source(in), sink(out))
+        in.bytes should equal (out.toByteArray)
+      }
+
+      "given channels which are not backed by files" in {
+        for (sameThreadThreshold <- Seq(0L, Long.MaxValue)) {
+          withTempFiles { (in, _) =>
+            val source = new AbstractSource {
+              override def channel() = new ReadOnlyChannel(Files.newByteChannel(in))
+            }
+            val buffer = ByteBuffer allocate bufferSize
+            val sink = new AbstractSink {
+              override def channel() = new ByteBufferChannel(buffer)
+            }
+            transfer(source, sink, CopyOptions.DEFAULT withSameThreadThreshold sameThreadThreshold)
+            buffer.array should equal (Files.readAllBytes(in))
+          }
+        }
+      }
+    }
+
+    "query the size hint only if the source does not support channels" in {
+      var queries = 0
+      val hint = new SizeHint {
+        override def size() = { queries += 1; bufferSize.toLong }
+      }
+      withTempFiles { (in, out) =>
+        transfer(fileSource(in), fileSink(out), CopyOptions.DEFAULT, hint)
+        queries should be (0)
+      }
+      val in = StreamsTest.in
+      val out = StreamsTest.out
+      val options = CopyOptions.DEFAULT withExecutor failingExecutor withSameThreadThreshold Long.MaxValue
+      transfer(source(in), sink(out), options, hint)
+      queries should be (1)
+      in.bytes should equal (out.toByteArray)
+    }
+  }
+
   private def givenA = afterWord("given a")
 
   private def any[A: Manifest] =
@@ -391,6 +655,68 @@ private object StreamsTest {
 
   private def out = new ByteArrayOutputStream(bufferSize)
 
+  private def fileSource(path: java.nio.file.Path) = new AbstractSource {
+    override def channel() = Files.newByteChannel(path)
+  }
+
+  private def fileSink(path: java.nio.file.Path) = new AbstractSink {
+    override def channel() =
+      Files.newByteChannel(path, WRITE, TRUNCATE_EXISTING)
+  }
+
+  private def failingExecutor = new AbstractExecutorService {
+    override def execute(command: Runnable) { fail("Unexpected reader task!") }
+    override def shutdown() { }
+    override def shutdownNow() = Collections.emptyList[Runnable]
+    override def isShutdown = false
+    override def isTerminated = false
+    override def awaitTermination(timeout: Long, unit: TimeUnit) = false
+  }
+
+  private def checkReaderPool(executor: java.util.concurrent.ExecutorService) {
+    executor shouldBe a [ThreadPoolExecutor]
+    val pool = executor.asInstanceOf[ThreadPoolExecutor]
+    pool.getMaximumPoolSize should be (MAX_READERS)
+    val thread = pool.getThreadFactory newThread new Runnable { override def run() { } }
+    thread shouldBe a [ReaderThread]
+    thread.isDaemon should be (true)
+  }
+
+  private def withExecutor(executor: java.util.concurrent.ExecutorService)(test: java.util.concurrent.ExecutorService => Any) {
+    try {
+      test(executor)
+    } finally {
+      executor shutdownNow ()
+    }
+  }
+
+  private def withPlatformThreads(test: => Any) {
+    val key = classOf[Streams].getName + ".platformThreads"
+    System setProperty (key, "true")
+    try {
+      test
+    } finally {
+      System clearProperty key
+    }
+  }
+
+  private def withTempFiles(test: (java.nio.file.Path, java.nio.file.Path) => Any) {
+    val in = Files.createTempFile("tzp", null)
+    try {
+      val out = Files.createTempFile("tzp", null)
+      try {
+        val b = new Array[Byte](bufferSize)
+        Random.nextBytes(b)
+        Files.write(in, b)
+        test(in, out)
+      } finally {
+        Files.delete(out)
+      }
+    } finally {
+      Files.delete(in)
+    }
+  }
+
   private class ByteArrayInputStreamWithBuffer(val bytes: Array[Byte])
     extends ByteArrayInputStream(bytes)
 }